@@ -0,0 +1,417 @@
+package main;
+
+import model.AttendanceColumns;
+import model.AttendanceRollup;
+import model.AttendanceStats;
+import model.AuditEntry;
+import model.Student;
+import repository.AttendanceRepository;
+import repository.AuditJournal;
+import repository.DatabaseConnection;
+import repository.RouteMetrics;
+import repository.StudentRepository;
+import repository.TeacherRepository;
+import service.AttendanceAnalyticsService;
+import service.AttendanceApiServer;
+import service.AttendanceArchiver;
+import service.KioskIngestionService;
+import service.OwnerCredentialStore;
+import service.ReportWriter;
+import service.RollupScheduler;
+import service.SchoolReportExporter;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+
+// Headless command line entry point for scheduled jobs (exports, imports,
+// reports, counter maintenance, benchmarks). Uses the same repositories and
+// services as the GUI but never touches AWT/Swing, so it starts fast and runs
+// on servers without a display:
+//
+//   java -cp bin;lib/* main.BatchMain <command> [args]
+public class BatchMain {
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        if (args.length == 0) {
+            printUsage();
+            System.exit(1);
+        }
+
+        TeacherRepository teacherRepo = new TeacherRepository();
+        StudentRepository studentRepo = new StudentRepository();
+        AttendanceRepository attendanceRepo = new AttendanceRepository();
+        DatabaseConnection.loadDriver();
+        AuditJournal.setActor("batch:" + args[0]);
+
+        String[] rest = Arrays.copyOfRange(args, 1, args.length);
+        try {
+            if (!"audit".equals(args[0])) DatabaseConnection.checkConfig(); // audit only reads the journal
+            switch (args[0]) {
+                case "export":
+                    export(attendanceRepo, rest);
+                    break;
+                case "import-students":
+                    importStudents(studentRepo, rest);
+                    break;
+                case "report":
+                    report(attendanceRepo, teacherRepo, rest);
+                    break;
+                case "export-all":
+                    exportAll(attendanceRepo, studentRepo, teacherRepo, rest);
+                    break;
+                case "analytics":
+                    analytics(attendanceRepo, rest);
+                    break;
+                case "archive":
+                    System.out.println("Archived rows: " + new AttendanceArchiver(attendanceRepo).archiveClosedMonths());
+                    break;
+                case "rollup":
+                    rollup(attendanceRepo, rest);
+                    break;
+                case "rollups":
+                    rollups(attendanceRepo, rest);
+                    break;
+                case "reconcile":
+                    reconcile(attendanceRepo);
+                    break;
+                case "bench":
+                    bench(attendanceRepo, studentRepo, rest);
+                    break;
+                case "db-stats":
+                    dbStats(studentRepo);
+                    break;
+                case "kiosk":
+                    kiosk(attendanceRepo, studentRepo, rest);
+                    break;
+                case "audit":
+                    audit(rest);
+                    break;
+                case "serve":
+                    serve(attendanceRepo, studentRepo, teacherRepo, rest);
+                    break;
+                default:
+                    printUsage();
+                    System.exit(1);
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(2);
+        }
+        System.exit(0);
+    }
+
+    private static void printUsage() {
+        System.out.println("Usage: BatchMain <command> [args]");
+        System.out.println("  export <subject|ALL> <from> <to> <file.csv>   Attendance rows as CSV");
+        System.out.println("  import-students <file.csv>                   Rows of id,name,subject (existing ids are skipped)");
+        System.out.println("  report <subject> <from> <to> <file.txt>      Same text report as the teacher dashboard");
+        System.out.println("  export-all <from> <to> <file.zip>            Every subject's report plus an index, in one ZIP");
+        System.out.println("  analytics <from> <to>                        School-wide streak/trend summary");
+        System.out.println("  archive                                      Move closed months to the archive");
+        System.out.println("  rollup [--full]                              Bring daily/weekly rollups up to date (--full recomputes all)");
+        System.out.println("  rollups <from> <to> [D|W] [subject]          Print precomputed daily (default) or weekly rollups");
+        System.out.println("  reconcile                                    Archive closed months and rebuild archived counters and rollups");
+        System.out.println("  bench [subject] [from] [to]                  Time the main read paths");
+        System.out.println("  db-stats                                     Replica lag and per-route connection metrics");
+        System.out.println("  kiosk [subject] [--port N]                   Mark scanned ids present, one per line from stdin");
+        System.out.println("                                               (or from local door clients on 127.0.0.1:N)");
+        System.out.println("  audit <from> <to> [id|username]              Audit journal entries in the date range");
+        System.out.println("  serve [port] [--bind address]                HTTP API for thin clients (default 127.0.0.1:" + AttendanceApiServer.DEFAULT_PORT + ")");
+        System.out.println("Dates are YYYY-MM-DD.");
+    }
+
+    private static void requireArgs(String[] args, int count) {
+        if (args.length < count) {
+            printUsage();
+            System.exit(1);
+        }
+    }
+
+    private static void export(AttendanceRepository attendanceRepo, String[] args) throws IOException {
+        requireArgs(args, 4);
+        String subject = "ALL".equalsIgnoreCase(args[0]) ? null : args[0];
+        LocalDate from = LocalDate.parse(args[1]);
+        LocalDate to = LocalDate.parse(args[2]);
+
+        int[] rows = {0};
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(args[3]), StandardCharsets.UTF_8))) {
+            writer.write("student_id,subject,date,is_present");
+            writer.newLine();
+            IOException[] failure = {null};
+            attendanceRepo.streamRecordsByDateRange(subject, from, to, r -> {
+                if (failure[0] != null) return;
+                try {
+                    writer.write(csv(r.getStudentId()) + "," + csv(r.getSubject()) + "," + r.getDate() + "," + (r.isPresent() ? 1 : 0));
+                    writer.newLine();
+                    rows[0]++;
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            });
+            if (failure[0] != null) throw failure[0];
+        }
+        System.out.println("Exported " + rows[0] + " rows to " + args[3]);
+    }
+
+    private static void importStudents(StudentRepository studentRepo, String[] args) throws IOException {
+        requireArgs(args, 1);
+        Set<String> existing = new HashSet<>();
+        for (Student s : studentRepo.getAll()) existing.add(s.getId());
+
+        List<Student> batch = new ArrayList<>();
+        int skipped = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(args[0]), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(",", -1);
+                if (parts.length < 3 || parts[0].trim().isEmpty() || parts[0].trim().equalsIgnoreCase("id")) continue;
+                String id = parts[0].trim();
+                if (!existing.add(id)) {
+                    skipped++;
+                    continue;
+                }
+                batch.add(new Student(id, parts[1].trim(), parts[2].trim()));
+            }
+        }
+        int added = batch.isEmpty() ? 0 : studentRepo.addStudents(batch);
+        System.out.println("Imported " + added + " students, skipped " + skipped + " existing ids");
+    }
+
+    private static void report(AttendanceRepository attendanceRepo, TeacherRepository teacherRepo, String[] args) throws IOException {
+        requireArgs(args, 4);
+        String subject = args[0];
+        String teacherName = teacherRepo.getAllTeachers().stream()
+                .filter(t -> t.getSubject().equalsIgnoreCase(subject))
+                .map(t -> t.getUsername())
+                .findFirst().orElse("-");
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(args[3]), StandardCharsets.UTF_8))) {
+            int[] counts = new ReportWriter(attendanceRepo).writeDateRangeReport(writer, subject, teacherName,
+                    LocalDate.parse(args[1]), LocalDate.parse(args[2]));
+            System.out.println("Report written to " + args[3] + " (" + counts[0] + " records)");
+        }
+    }
+
+    private static void exportAll(AttendanceRepository attendanceRepo, StudentRepository studentRepo, TeacherRepository teacherRepo, String[] args) throws IOException {
+        requireArgs(args, 3);
+        List<SchoolReportExporter.SubjectResult> results = new SchoolReportExporter(attendanceRepo, studentRepo, teacherRepo)
+                .exportAll(LocalDate.parse(args[0]), LocalDate.parse(args[1]), new File(args[2]));
+        System.out.println("Exported " + results.size() + " subject reports to " + args[2]);
+    }
+
+    private static void analytics(AttendanceRepository attendanceRepo, String[] args) {
+        requireArgs(args, 2);
+        Map<String, List<AttendanceStats>> bySubject = new AttendanceAnalyticsService(attendanceRepo)
+                .analyzeSchool(LocalDate.parse(args[0]), LocalDate.parse(args[1]));
+        System.out.println(String.format("%-20s %-12s %-8s %-8s %-15s %-10s", "Subject", "Student ID", "Rate", "Streak", "Longest Absent", "Trend/30d"));
+        for (Map.Entry<String, List<AttendanceStats>> e : bySubject.entrySet()) {
+            for (AttendanceStats s : e.getValue()) {
+                System.out.println(String.format("%-20s %-12s %-8.2f %-8d %-15d %+-10.2f", e.getKey(), s.getStudentId(),
+                        s.getPercentage(), s.getCurrentStreak(), s.getLongestAbsenceRun(), s.getTrendPerMonth()));
+            }
+        }
+    }
+
+    private static void rollup(AttendanceRepository attendanceRepo, String[] args) throws IOException {
+        RollupScheduler scheduler = new RollupScheduler(attendanceRepo);
+        boolean full = args.length > 0 && args[0].equals("--full");
+        int rows = full ? scheduler.rebuild() : scheduler.catchUp();
+        if (rows < 0) throw new IOException("Rollup failed on at least one shard; its watermark was kept, so the next run retries it");
+        System.out.println("Rollup rows written: " + rows);
+    }
+
+    private static void rollups(AttendanceRepository attendanceRepo, String[] args) {
+        requireArgs(args, 2);
+        char periodType = args.length > 2 ? Character.toUpperCase(args[2].charAt(0)) : AttendanceRollup.DAILY;
+        String subject = args.length > 3 ? args[3] : null;
+        System.out.println(String.format("%-20s %-12s %-8s %-8s %-8s", "Subject", periodType == AttendanceRollup.WEEKLY ? "Week of" : "Date", "Present", "Absent", "Rate"));
+        for (AttendanceRollup r : attendanceRepo.getRollups(subject, periodType, LocalDate.parse(args[0]), LocalDate.parse(args[1]))) {
+            System.out.println(String.format("%-20s %-12s %-8d %-8d %-8.2f", r.getSubject(), r.getPeriodStart(),
+                    r.getPresentCount(), r.getAbsentCount(), r.getRate()));
+        }
+    }
+
+    private static void reconcile(AttendanceRepository attendanceRepo) {
+        int archived = new AttendanceArchiver(attendanceRepo).archiveClosedMonths();
+        int counters = attendanceRepo.rebuildArchiveSummary();
+        int rollups = new RollupScheduler(attendanceRepo).rebuild();
+        System.out.println("Archived rows: " + archived + ", monthly counters rebuilt: " + counters + ", rollup rows: " + rollups);
+    }
+
+    private static void bench(AttendanceRepository attendanceRepo, StudentRepository studentRepo, String[] args) {
+        LocalDate to = args.length > 2 ? LocalDate.parse(args[2]) : LocalDate.now();
+        LocalDate from = args.length > 1 ? LocalDate.parse(args[1]) : to.minusMonths(6);
+        String subject = args.length > 0 ? args[0] : null;
+
+        time("connection pool priming", () -> DatabaseConnection.prime(3));
+        time("roster load", studentRepo::getAll);
+        AttendanceColumns[] cols = {null};
+        time("columnar range load", () -> cols[0] = attendanceRepo.getColumnsByDateRange(subject, from, to));
+        System.out.println("  rows: " + cols[0].size());
+        time("analytics", () -> new AttendanceAnalyticsService(attendanceRepo).analyzeSchool(from, to));
+        if (subject != null) {
+            List<Student> roster = studentRepo.getAll();
+            time("per-student percentages", () -> {
+                for (Student s : roster) {
+                    if (s.getSubject().equalsIgnoreCase(subject)) attendanceRepo.getAttendancePercentage(s.getId(), subject);
+                }
+            });
+        }
+        printRouteMetrics();
+    }
+
+    // One read per shard starts the replica monitors; give them a couple of heartbeats
+    private static void dbStats(StudentRepository studentRepo) {
+        StudentRepository.invalidateRoster();
+        studentRepo.getAll();
+        try {
+            Thread.sleep(3_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Map.Entry<String, Long> e : DatabaseConnection.getReplicaLag().entrySet()) {
+            System.out.println(String.format("%-20s replica lag: %s", e.getKey(), e.getValue() < 0 ? "n/a" : e.getValue() + " ms"));
+        }
+        printRouteMetrics();
+    }
+
+    private static void printRouteMetrics() {
+        for (RouteMetrics m : DatabaseConnection.getRouteMetrics()) System.out.println(m);
+    }
+
+    // Scanners in keyboard-wedge mode type the id and Enter, so one line is one scan.
+    // With --port, each door connects over a local socket, sends lines and reads back
+    // one result per line; otherwise scans come from stdin until it is closed.
+    private static void kiosk(AttendanceRepository attendanceRepo, StudentRepository studentRepo, String[] args) throws IOException {
+        String subject = null;
+        int port = -1;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--port") && i + 1 < args.length) port = Integer.parseInt(args[++i]);
+            else subject = args[i];
+        }
+        KioskIngestionService kiosk = new KioskIngestionService(attendanceRepo, studentRepo, subject);
+        kiosk.start();
+        System.out.println("Kiosk ready" + (subject != null ? " for " + subject : "") + (port > 0 ? " on port " + port : ""));
+
+        if (port > 0) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> stopKiosk(kiosk)));
+            try (ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+                while (true) {
+                    Socket door = server.accept();
+                    Thread.ofVirtual().name("kiosk-door-" + door.getPort()).start(() -> serveDoor(kiosk, door));
+                }
+            }
+        }
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (!line.isBlank()) System.out.println(kiosk.submit(line));
+            }
+        }
+        stopKiosk(kiosk);
+    }
+
+    private static void serveDoor(KioskIngestionService kiosk, Socket door) {
+        try (door;
+             BufferedReader in = new BufferedReader(new InputStreamReader(door.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(new OutputStreamWriter(door.getOutputStream(), StandardCharsets.UTF_8), true)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (!line.isBlank()) out.println(kiosk.submit(line));
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void stopKiosk(KioskIngestionService kiosk) {
+        try {
+            kiosk.stop();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        System.out.println("Kiosk: " + kiosk);
+    }
+
+    // Runs until the process is stopped. Binds to loopback unless told otherwise;
+    // classroom PCs need --bind 0.0.0.0 (or the server's LAN address). There is no
+    // TLS: off loopback, logins and tokens travel in clear text (a warning is printed).
+    private static void serve(AttendanceRepository attendanceRepo, StudentRepository studentRepo, TeacherRepository teacherRepo, String[] args) throws IOException {
+        int port = AttendanceApiServer.DEFAULT_PORT;
+        InetAddress bind = InetAddress.getLoopbackAddress();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--bind") && i + 1 < args.length) bind = InetAddress.getByName(args[++i]);
+            else port = Integer.parseInt(args[i]);
+        }
+        OwnerCredentialStore.ensureLoaded(); // Refuse to serve owner logins from a damaged file
+        DatabaseConnection.prime(4);
+        studentRepo.getAll(); // Fill the roster cache before the first client asks
+
+        AttendanceApiServer server = new AttendanceApiServer(attendanceRepo, studentRepo, teacherRepo, new InetSocketAddress(bind, port));
+        RollupScheduler rollups = new RollupScheduler(attendanceRepo); // Thin clients don't run it
+        rollups.start();
+        server.start();
+        System.out.println("Serving on http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort());
+        if (!bind.isLoopbackAddress()) {
+            System.err.println("Warning: plain HTTP on " + bind.getHostAddress() + " - passwords and session tokens"
+                    + " are sent unencrypted. Use a trusted network or put a TLS proxy in front.");
+        }
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop();
+            rollups.stop();
+            System.out.println("API: " + server);
+        }));
+        try {
+            Thread.currentThread().join(); // Request threads do the work
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void audit(String[] args) throws IOException {
+        requireArgs(args, 2);
+        ZoneId zone = ZoneId.systemDefault();
+        Instant from = LocalDate.parse(args[0]).atStartOfDay(zone).toInstant();
+        Instant to = LocalDate.parse(args[1]).plusDays(1).atStartOfDay(zone).toInstant().minusMillis(1);
+        String key = args.length > 2 ? args[2] : null;
+
+        int count = 0;
+        for (AuditEntry e : AuditJournal.read(from, to)) {
+            if (key != null && !key.equalsIgnoreCase(e.getKey())) continue;
+            System.out.println(String.join("\t",
+                    LocalDateTime.ofInstant(e.getAt(), zone).toString(),
+                    e.getActor() == null ? "" : e.getActor(),
+                    e.getOperation().name(),
+                    e.getSubject() == null ? "" : e.getSubject(),
+                    e.getKey() == null ? "" : e.getKey(),
+                    e.getDate() == null ? "" : e.getDate().toString(),
+                    e.getOperation() == AuditEntry.Operation.MARK ? (e.isPresent() ? "present" : "absent") : String.valueOf(e.getCount()),
+                    e.getDetail() == null ? "" : e.getDetail()));
+            count++;
+        }
+        System.out.println(count + " entries");
+    }
+
+    private static void time(String label, Runnable task) {
+        long start = System.nanoTime();
+        task.run();
+        System.out.println(String.format("%-28s %8.1f ms", label, (System.nanoTime() - start) / 1_000_000.0));
+    }
+
+    private static String csv(String value) {
+        if (value == null) return "";
+        if (value.contains(",") || value.contains("\"")) return "\"" + value.replace("\"", "\"\"") + "\"";
+        return value;
+    }
+}
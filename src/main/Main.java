@@ -3,31 +3,48 @@ import ui.LoginFrame;
 import repository.TeacherRepository;
 import repository.StudentRepository;
 import repository.AttendanceRepository;
-import javax.swing.UIManager; // Required import for Look and Feel
+import repository.ApiClient;
+import repository.DatabaseConnection;
+import repository.RemoteAttendanceRepository;
+import repository.RemoteStudentRepository;
+import service.OwnerCredentialStore;
+import service.RollupScheduler;
 
 public class Main {
     public static void main(String[] args){
     	
-        // --- 1. Set Nimbus Look and Feel for modern UI ---
-        try {
-            for (UIManager.LookAndFeelInfo info : UIManager.getInstalledLookAndFeels()) {
-                if ("Nimbus".equals(info.getName())) {
-                    UIManager.setLookAndFeel(info.getClassName());
-                    break;
-                }
-            }
-        } catch (Exception e) {
-            // Fall back to default L&F if Nimbus is unavailable
-            e.printStackTrace();
-        }
-        // ------------------------------------------------
+        // --- 1. Start the background warm-up (Nimbus L&F, image decode, DB connections) ---
+        StartupWarmup warmup = new StartupWarmup();
+        java.util.concurrent.CompletableFuture<Void> lookAndFeel = warmup.lookAndFeel();
+        
+        // A damaged owner credential file or database.properties stops startup with a clear message.
+        // Thin clients check the database settings too: teacher management and the owner's
+        // archive and ranking screens still use the database directly.
+        if (!ApiClient.isEnabled()) OwnerCredentialStore.ensureLoaded();
+        DatabaseConnection.checkConfig();
         
         // --- 2. Initialize Repositories and Start the application ---
         TeacherRepository teacherRepo = new TeacherRepository();
-        StudentRepository studentRepo = new StudentRepository();
-        AttendanceRepository attendanceRepo = new AttendanceRepository(); // NEW: Attendance Repo
+        StudentRepository studentRepo;
+        AttendanceRepository attendanceRepo; // NEW: Attendance Repo
+        
+        if (ApiClient.isEnabled()) {
+            // NEW: Thin client (-Dattendance.server=...): the API server owns the database side
+            studentRepo = new RemoteStudentRepository();
+            attendanceRepo = new RemoteAttendanceRepository();
+            warmup.warmUpImages();
+        } else {
+            studentRepo = new StudentRepository();
+            attendanceRepo = new AttendanceRepository();
+            warmup.warmUp(studentRepo, attendanceRepo);
+            new RollupScheduler(attendanceRepo).start(); // Daily/weekly rollups in the background
+        }
+        // Load and initialise the login screen's classes (most of Swing) while the L&F is
+        // still being set up; only creating components has to wait for it
+        warmup.preloadClass("ui.LoginFrame");
+        lookAndFeel.join(); // L&F has to be in place before any component is created
         
         // Pass ALL three repositories to the updated LoginFrame constructor
         new LoginFrame(teacherRepo, studentRepo, attendanceRepo).setVisible(true); // UPDATED
     }
-}
\ No newline at end of file
+}
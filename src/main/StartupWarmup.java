@@ -0,0 +1,69 @@
+package main;
+
+import repository.AttendanceRepository;
+import repository.DatabaseConnection;
+import repository.StudentRepository;
+import ui.ImageCache;
+
+import javax.swing.UIManager;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Runs the slow parts of startup on virtual threads while the login screen is shown:
+// look-and-feel setup, background image decode, JDBC driver load, connection pool
+// priming and the roster prefetch. By the time someone has typed their password,
+// the first query runs on an already-open connection. Archiving is not done here:
+// it locks AttendanceMark, so it runs in RollupScheduler's nightly slot instead.
+public class StartupWarmup {
+
+    private static final String LOGIN_BACKGROUND = "/ui/images/login_bg.jpg";
+    private static final int PRIMED_CONNECTIONS = 3;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    // Must complete before the first frame is created
+    public CompletableFuture<Void> lookAndFeel() {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                for (UIManager.LookAndFeelInfo info : UIManager.getInstalledLookAndFeels()) {
+                    if ("Nimbus".equals(info.getName())) {
+                        UIManager.setLookAndFeel(info.getClassName());
+                        break;
+                    }
+                }
+            } catch (Exception e) {
+                // Fall back to default L&F if Nimbus is unavailable
+                e.printStackTrace();
+            }
+        }, executor);
+    }
+
+    // Loads and initialises a class on the calling thread (no instances are created)
+    public void preloadClass(String name) {
+        try {
+            Class.forName(name, true, StartupWarmup.class.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Fire-and-forget: nothing waits on these, they only make later work faster
+    public void warmUp(StudentRepository studentRepo, AttendanceRepository attendanceRepo) {
+        CompletableFuture.runAsync(() -> ImageCache.preload(LOGIN_BACKGROUND), executor);
+
+        CompletableFuture.runAsync(DatabaseConnection::loadDriver, executor)
+                .thenRunAsync(() -> DatabaseConnection.prime(PRIMED_CONNECTIONS), executor)
+                .thenRunAsync(studentRepo::getAll, executor)
+                .whenComplete((ignored, error) -> {
+                    if (error != null) error.printStackTrace();
+                    executor.shutdown();
+                });
+    }
+
+    // Thin client: there is no database to warm up, only the login background
+    public void warmUpImages() {
+        CompletableFuture.runAsync(() -> ImageCache.preload(LOGIN_BACKGROUND), executor)
+                .whenComplete((ignored, error) -> executor.shutdown());
+    }
+}
@@ -0,0 +1,39 @@
+package model;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// A student's attendance crossing the alert threshold, in either direction
+public class AttendanceAlert {
+    public static final String FELL_BELOW = "FELL_BELOW";
+    public static final String RECOVERED = "RECOVERED";
+
+    private final LocalDateTime raisedAt;
+    private final String type;
+    private final String studentId;
+    private final String subject;
+    private final LocalDate markDate;   // Date of the mark that caused the crossing
+    private final double percentage;    // Attendance % after that mark
+    private final double threshold;
+
+    public AttendanceAlert(LocalDateTime raisedAt, String type, String studentId, String subject,
+                           LocalDate markDate, double percentage, double threshold) {
+        this.raisedAt = raisedAt;
+        this.type = type;
+        this.studentId = studentId;
+        this.subject = subject;
+        this.markDate = markDate;
+        this.percentage = percentage;
+        this.threshold = threshold;
+    }
+
+    public LocalDateTime getRaisedAt() { return raisedAt; }
+    public String getType() { return type; }
+    public String getStudentId() { return studentId; }
+    public String getSubject() { return subject; }
+    public LocalDate getMarkDate() { return markDate; }
+    public double getPercentage() { return percentage; }
+    public double getThreshold() { return threshold; }
+
+    public boolean isFellBelow() { return FELL_BELOW.equals(type); }
+}
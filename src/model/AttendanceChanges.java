@@ -0,0 +1,21 @@
+package model;
+
+import java.util.List;
+
+// One delta-sync read: hot rows added or edited since the caller's row version, the
+// record ids of hot rows deleted since then, and the row version to ask from next time.
+public class AttendanceChanges {
+    private final List<AttendanceRecord> records;
+    private final List<Integer> deletedRecordIds;
+    private final long upToRowVersion;
+
+    public AttendanceChanges(List<AttendanceRecord> records, List<Integer> deletedRecordIds, long upToRowVersion) {
+        this.records = records;
+        this.deletedRecordIds = deletedRecordIds;
+        this.upToRowVersion = upToRowVersion;
+    }
+
+    public List<AttendanceRecord> getRecords() { return records; }
+    public List<Integer> getDeletedRecordIds() { return deletedRecordIds; }
+    public long getUpToRowVersion() { return upToRowVersion; }
+}
@@ -0,0 +1,131 @@
+package model;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.BitSet;
+
+// Column-oriented holder for bulk attendance loads. Rows are stored as parallel
+// primitive arrays (student code, subject code, epoch day) plus a presence bitset,
+// and the strings live once in shared dictionaries. A large range therefore costs
+// about 12 bytes and a bit per row instead of one AttendanceRecord object graph.
+//
+// View gives record-style access without allocating per row:
+//   AttendanceColumns.View v = cols.view();
+//   for (int i = 0; i < cols.size(); i++) { v.moveTo(i); ... v.getStudentId() ... }
+public class AttendanceColumns {
+
+    private final StringDictionary students;
+    private final StringDictionary subjects;
+
+    private int size = 0;
+    private int[] studentCodes;
+    private int[] subjectCodes;
+    private int[] epochDays;
+    private final BitSet present = new BitSet();
+
+    public AttendanceColumns(StringDictionary students, StringDictionary subjects) {
+        this(students, subjects, 256);
+    }
+
+    public AttendanceColumns(StringDictionary students, StringDictionary subjects, int initialCapacity) {
+        this.students = students;
+        this.subjects = subjects;
+        int cap = Math.max(16, initialCapacity);
+        studentCodes = new int[cap];
+        subjectCodes = new int[cap];
+        epochDays = new int[cap];
+    }
+
+    public void add(String studentId, String subject, int epochDay, boolean isPresent) {
+        addCodes(students.encode(studentId), subjects.encode(subject), epochDay, isPresent);
+    }
+
+    // Appends a row whose strings are already encoded in this holder's dictionaries
+    public void addCodes(int studentCode, int subjectCode, int epochDay, boolean isPresent) {
+        if (size == epochDays.length) {
+            int cap = size * 2;
+            studentCodes = Arrays.copyOf(studentCodes, cap);
+            subjectCodes = Arrays.copyOf(subjectCodes, cap);
+            epochDays = Arrays.copyOf(epochDays, cap);
+        }
+        studentCodes[size] = studentCode;
+        subjectCodes[size] = subjectCode;
+        epochDays[size] = epochDay;
+        if (isPresent) present.set(size);
+        size++;
+    }
+
+    // Appends another load's rows; both must share the same dictionaries
+    public void addAll(AttendanceColumns other) {
+        if (other.students != students || other.subjects != subjects) {
+            throw new IllegalArgumentException("Columns use different dictionaries");
+        }
+        int needed = size + other.size;
+        if (needed > epochDays.length) {
+            int cap = Math.max(needed, size * 2);
+            studentCodes = Arrays.copyOf(studentCodes, cap);
+            subjectCodes = Arrays.copyOf(subjectCodes, cap);
+            epochDays = Arrays.copyOf(epochDays, cap);
+        }
+        System.arraycopy(other.studentCodes, 0, studentCodes, size, other.size);
+        System.arraycopy(other.subjectCodes, 0, subjectCodes, size, other.size);
+        System.arraycopy(other.epochDays, 0, epochDays, size, other.size);
+        for (int i = other.present.nextSetBit(0); i >= 0; i = other.present.nextSetBit(i + 1)) {
+            present.set(size + i);
+        }
+        size = needed;
+    }
+
+    public int size() { return size; }
+    public StringDictionary getStudents() { return students; }
+    public StringDictionary getSubjects() { return subjects; }
+
+    public int studentCode(int row) { return studentCodes[row]; }
+    public int subjectCode(int row) { return subjectCodes[row]; }
+    public int epochDay(int row) { return epochDays[row]; }
+    public boolean isPresent(int row) { return present.get(row); }
+
+    public int presentCount() { return present.cardinality(); }
+
+    // Row numbers ordered by day; a stable counting sort, so rows of one day keep their
+    // load order (a load ordered by subject and student lists by date, subject, student)
+    public int[] rowsByDate() {
+        int[] order = new int[size];
+        if (size == 0) return order;
+        int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+        for (int i = 0; i < size; i++) {
+            min = Math.min(min, epochDays[i]);
+            max = Math.max(max, epochDays[i]);
+        }
+        int[] next = new int[max - min + 2];
+        for (int i = 0; i < size; i++) next[epochDays[i] - min + 1]++;
+        for (int d = 1; d < next.length; d++) next[d] += next[d - 1];
+        for (int i = 0; i < size; i++) order[next[epochDays[i] - min]++] = i;
+        return order;
+    }
+
+    public View view() {
+        return new View();
+    }
+
+    // Flyweight cursor over the columns; one instance can walk every row
+    public class View {
+        private int row = -1;
+
+        public View moveTo(int row) {
+            this.row = row;
+            return this;
+        }
+
+        public int getRow() { return row; }
+        public String getStudentId() { return students.valueOf(studentCodes[row]); }
+        public String getSubject() { return subjects.valueOf(subjectCodes[row]); }
+        public int getEpochDay() { return epochDays[row]; }
+        public LocalDate getDate() { return LocalDate.ofEpochDay(epochDays[row]); }
+        public boolean isPresent() { return present.get(row); }
+
+        public AttendanceRecord toRecord() {
+            return new AttendanceRecord(getStudentId(), getSubject(), getDate(), isPresent());
+        }
+    }
+}
@@ -9,6 +9,9 @@ public class AttendanceRecord implements Serializable {
     private String subject; // To link to the teacher/class
     private LocalDate date;
     private boolean isPresent;
+    // Database identity and rowversion; 0 for records that were not read from the table
+    private int recordId;
+    private long rowVersion;
 
     public AttendanceRecord(String studentId, String subject, LocalDate date, boolean isPresent) {
         this.studentId = studentId;
@@ -17,8 +20,16 @@ public class AttendanceRecord implements Serializable {
         this.isPresent = isPresent;
     }
 
+    public AttendanceRecord(int recordId, long rowVersion, String studentId, String subject, LocalDate date, boolean isPresent) {
+        this(studentId, subject, date, isPresent);
+        this.recordId = recordId;
+        this.rowVersion = rowVersion;
+    }
+
     public String getStudentId() { return studentId; }
     public String getSubject() { return subject; }
     public LocalDate getDate() { return date; }
     public boolean isPresent() { return isPresent; }
+    public int getRecordId() { return recordId; }
+    public long getRowVersion() { return rowVersion; }
 }
\ No newline at end of file
@@ -0,0 +1,136 @@
+package model;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+// Compact binary form of AttendanceRecord, for caches, snapshot files, journals
+// and client/server transfer. Student and subject are stored as dictionary codes,
+// the date as an epoch day and the presence flag as a single bit.
+//
+// Single record:  varint student | varint subject | varint zigzag(epochDay) << 1 | present
+//                 (typically 5 bytes instead of 200+ with Java serialization)
+//
+// Block of records (best when sorted by subject, student, date):
+//   varint count, then per record
+//   varint zigzag(dayDelta) << 2 | keyChanged << 1 | present
+//   [varint subject, varint student]   only when keyChanged
+//   A run of marks for one student costs about one byte per mark.
+public class AttendanceRecordCodec {
+
+    private static final long MIN_EPOCH_DAY = LocalDate.MIN.toEpochDay();
+    private static final long MAX_EPOCH_DAY = LocalDate.MAX.toEpochDay();
+
+    private final StringDictionary students;
+    private final StringDictionary subjects;
+
+    public AttendanceRecordCodec(StringDictionary students, StringDictionary subjects) {
+        this.students = students;
+        this.subjects = subjects;
+    }
+
+    public StringDictionary getStudents() { return students; }
+    public StringDictionary getSubjects() { return subjects; }
+
+    // --- Single records ---
+
+    public void write(DataOutput out, AttendanceRecord r) throws IOException {
+        writeVarInt(out, students.encode(r.getStudentId()));
+        writeVarInt(out, subjects.encode(r.getSubject()));
+        writeVarLong(out, zigZag(r.getDate().toEpochDay()) << 1 | (r.isPresent() ? 1 : 0));
+    }
+
+    public AttendanceRecord read(DataInput in) throws IOException {
+        String student = students.decode(readVarInt(in));
+        String subject = subjects.decode(readVarInt(in));
+        long dayAndFlag = readVarLong(in);
+        return new AttendanceRecord(student, subject, dateOf(unZigZag(dayAndFlag >>> 1)), (dayAndFlag & 1) != 0);
+    }
+
+    // --- Delta-encoded blocks ---
+
+    public void writeBlock(DataOutput out, List<AttendanceRecord> records) throws IOException {
+        writeVarInt(out, records.size());
+        int lastStudent = -1, lastSubject = -1;
+        long lastDay = 0;
+        for (AttendanceRecord r : records) {
+            int student = students.encode(r.getStudentId());
+            int subject = subjects.encode(r.getSubject());
+            long day = r.getDate().toEpochDay();
+            boolean keyChanged = student != lastStudent || subject != lastSubject;
+
+            writeVarLong(out, zigZag(day - lastDay) << 2 | (keyChanged ? 2 : 0) | (r.isPresent() ? 1 : 0));
+            if (keyChanged) {
+                writeVarInt(out, subject);
+                writeVarInt(out, student);
+                lastStudent = student;
+                lastSubject = subject;
+            }
+            lastDay = day;
+        }
+    }
+
+    public List<AttendanceRecord> readBlock(DataInput in) throws IOException {
+        int count = readVarInt(in);
+        List<AttendanceRecord> records = new ArrayList<>(Math.min(count, 4096)); // count may come off the network
+        String student = null, subject = null;
+        long day = 0;
+        for (int i = 0; i < count; i++) {
+            long header = readVarLong(in);
+            day += unZigZag(header >>> 2);
+            if ((header & 2) != 0) {
+                subject = subjects.decode(readVarInt(in));
+                student = students.decode(readVarInt(in));
+            } else if (i == 0) {
+                throw new IOException("Malformed block: key expected on first record");
+            }
+            records.add(new AttendanceRecord(student, subject, dateOf(day), (header & 1) != 0));
+        }
+        return records;
+    }
+
+    // Input may come off the network, so an impossible day is a format error, not a DateTimeException
+    private static LocalDate dateOf(long epochDay) throws IOException {
+        if (epochDay < MIN_EPOCH_DAY || epochDay > MAX_EPOCH_DAY) throw new IOException("Malformed record: bad date");
+        return LocalDate.ofEpochDay(epochDay);
+    }
+
+    // --- Varint helpers (LEB128, 7 bits per byte) ---
+
+    public static void writeVarInt(DataOutput out, int value) throws IOException {
+        writeVarLong(out, value & 0xFFFFFFFFL);
+    }
+
+    public static int readVarInt(DataInput in) throws IOException {
+        return (int) readVarLong(in);
+    }
+
+    public static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    public static long readVarLong(DataInput in) throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return result;
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private static long zigZag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    private static long unZigZag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+}
@@ -0,0 +1,35 @@
+package model;
+
+import java.time.LocalDate;
+
+// Precomputed per-subject counts for one day ('D') or one Monday-based week ('W')
+public class AttendanceRollup {
+    public static final char DAILY = 'D';
+    public static final char WEEKLY = 'W';
+
+    private final String subject;
+    private final char periodType;
+    private final LocalDate periodStart;
+    private final int presentCount;
+    private final int absentCount;
+
+    public AttendanceRollup(String subject, char periodType, LocalDate periodStart, int presentCount, int absentCount) {
+        this.subject = subject;
+        this.periodType = periodType;
+        this.periodStart = periodStart;
+        this.presentCount = presentCount;
+        this.absentCount = absentCount;
+    }
+
+    public String getSubject() { return subject; }
+    public char getPeriodType() { return periodType; }
+    public LocalDate getPeriodStart() { return periodStart; }
+    public int getPresentCount() { return presentCount; }
+    public int getAbsentCount() { return absentCount; }
+    public int getTotal() { return presentCount + absentCount; }
+
+    public double getRate() {
+        int total = getTotal();
+        return total == 0 ? 0.0 : (double) presentCount / total * 100.0;
+    }
+}
@@ -0,0 +1,50 @@
+package model;
+
+import java.time.DayOfWeek;
+
+// Per-student, per-subject attendance metrics over a date range
+public class AttendanceStats {
+    private final String studentId;
+    private final String subject;
+    private final int totalSessions;
+    private final int presentCount;
+    private final int currentStreak;        // Consecutive presents up to the last session
+    private final int longestPresentStreak;
+    private final int longestAbsenceRun;
+    private final int[] weekdayPresent;     // Index 0 = Monday
+    private final int[] weekdayTotal;
+    private final double trendPerMonth;     // Change in attendance % per 30 days (least squares)
+
+    public AttendanceStats(String studentId, String subject, int totalSessions, int presentCount,
+                           int currentStreak, int longestPresentStreak, int longestAbsenceRun,
+                           int[] weekdayPresent, int[] weekdayTotal, double trendPerMonth) {
+        this.studentId = studentId;
+        this.subject = subject;
+        this.totalSessions = totalSessions;
+        this.presentCount = presentCount;
+        this.currentStreak = currentStreak;
+        this.longestPresentStreak = longestPresentStreak;
+        this.longestAbsenceRun = longestAbsenceRun;
+        this.weekdayPresent = weekdayPresent;
+        this.weekdayTotal = weekdayTotal;
+        this.trendPerMonth = trendPerMonth;
+    }
+
+    public String getStudentId() { return studentId; }
+    public String getSubject() { return subject; }
+    public int getTotalSessions() { return totalSessions; }
+    public int getPresentCount() { return presentCount; }
+    public int getCurrentStreak() { return currentStreak; }
+    public int getLongestPresentStreak() { return longestPresentStreak; }
+    public int getLongestAbsenceRun() { return longestAbsenceRun; }
+    public double getTrendPerMonth() { return trendPerMonth; }
+
+    public double getPercentage() {
+        return totalSessions == 0 ? 0.0 : (double) presentCount / totalSessions * 100.0;
+    }
+
+    public double getWeekdayPercentage(DayOfWeek day) {
+        int total = weekdayTotal[day.getValue() - 1];
+        return total == 0 ? 0.0 : (double) weekdayPresent[day.getValue() - 1] / total * 100.0;
+    }
+}
@@ -0,0 +1,25 @@
+package model;
+
+// Present/total sessions of one student in one subject over some period
+public class AttendanceTotal {
+    private final String studentId;
+    private final String subject;
+    private final int presentCount;
+    private final int totalSessions;
+
+    public AttendanceTotal(String studentId, String subject, int presentCount, int totalSessions) {
+        this.studentId = studentId;
+        this.subject = subject;
+        this.presentCount = presentCount;
+        this.totalSessions = totalSessions;
+    }
+
+    public String getStudentId() { return studentId; }
+    public String getSubject() { return subject; }
+    public int getPresentCount() { return presentCount; }
+    public int getTotalSessions() { return totalSessions; }
+
+    public double getPercentage() {
+        return totalSessions == 0 ? 0.0 : (double) presentCount / totalSessions * 100.0;
+    }
+}
@@ -0,0 +1,53 @@
+package model;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+// One line of the audit journal: who did what to which record, and when
+public class AuditEntry {
+    public enum Operation {
+        MARK,              // Attendance mark saved (key = student id, date, present)
+        SESSION_FINALIZE,  // Draft session saved by a teacher (date)
+        ARCHIVE,           // Closed months moved to the archive (date = cutoff, count = rows)
+        STUDENT_ADD,       // key = student id, detail = name
+        STUDENT_EDIT,      // key = student id, detail = new name, subject = new subject
+        STUDENT_DELETE,    // key = student id (cascades to all of their attendance)
+        TEACHER_ADD,       // key = username
+        TEACHER_EDIT,      // key = username, subject = new subject
+        TEACHER_DELETE,    // key = username
+        LOGIN              // key = username, detail = terminal
+    }
+
+    private final Instant at;
+    private final Operation operation;
+    private final String actor;
+    private final String subject;
+    private final String key;
+    private final LocalDate date;     // null if the operation has none
+    private final boolean present;
+    private final int count;
+    private final String detail;
+
+    public AuditEntry(Instant at, Operation operation, String actor, String subject, String key,
+                      LocalDate date, boolean present, int count, String detail) {
+        this.at = at;
+        this.operation = operation;
+        this.actor = actor;
+        this.subject = subject;
+        this.key = key;
+        this.date = date;
+        this.present = present;
+        this.count = count;
+        this.detail = detail;
+    }
+
+    public Instant getAt() { return at; }
+    public Operation getOperation() { return operation; }
+    public String getActor() { return actor; }
+    public String getSubject() { return subject; }
+    public String getKey() { return key; }
+    public LocalDate getDate() { return date; }
+    public boolean isPresent() { return present; }
+    public int getCount() { return count; }
+    public String getDetail() { return detail; }
+}
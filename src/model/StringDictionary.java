@@ -0,0 +1,78 @@
+package model;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Append-only two-way mapping between strings (student ids, subjects) and small ints.
+// Codes are dense, starting at 0, and never change once assigned, so encoded data
+// stays valid as long as it travels with (or after) the dictionary it was written with.
+// Code 0 is reserved for null (student_id and subject are nullable) and is not written out.
+public class StringDictionary {
+
+    public static final int NULL_CODE = 0;
+
+    private final ConcurrentHashMap<String, Integer> codes = new ConcurrentHashMap<>();
+    private final List<String> values = new ArrayList<>();
+
+    public StringDictionary() {
+        values.add(null); // NULL_CODE
+    }
+
+    public int encode(String value) {
+        if (value == null) return NULL_CODE;
+        Integer code = codes.get(value);
+        if (code != null) return code;
+        synchronized (values) {
+            return codes.computeIfAbsent(value, v -> {
+                values.add(v);
+                return values.size() - 1;
+            });
+        }
+    }
+
+    // -1 when the value has never been encoded
+    public int lookup(String value) {
+        if (value == null) return NULL_CODE;
+        Integer code = codes.get(value);
+        return code == null ? -1 : code;
+    }
+
+    // For codes read off a stream, which may not belong to this dictionary
+    public String decode(int code) throws IOException {
+        synchronized (values) {
+            if (code < 0 || code >= values.size()) throw new IOException("Unknown dictionary code " + code);
+            return values.get(code);
+        }
+    }
+
+    // For codes this dictionary handed out itself
+    public String valueOf(int code) {
+        synchronized (values) {
+            return values.get(code);
+        }
+    }
+
+    public int size() {
+        synchronized (values) {
+            return values.size();
+        }
+    }
+
+    public void writeTo(DataOutput out) throws IOException {
+        synchronized (values) {
+            AttendanceRecordCodec.writeVarInt(out, values.size() - 1);
+            for (String v : values.subList(1, values.size())) out.writeUTF(v);
+        }
+    }
+
+    public static StringDictionary readFrom(DataInput in) throws IOException {
+        StringDictionary dict = new StringDictionary();
+        int size = AttendanceRecordCodec.readVarInt(in);
+        for (int i = 0; i < size; i++) dict.encode(in.readUTF());
+        return dict;
+    }
+}
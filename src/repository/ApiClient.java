@@ -0,0 +1,158 @@
+package repository;
+
+import model.AttendanceRecord;
+import model.AttendanceRecordCodec;
+import model.StringDictionary;
+
+import java.io.*;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Calls of the thin client to service.AttendanceApiServer. Thin-client mode is on when
+// the UI is started with -Dattendance.server=http://host:port; the session token from
+// the login call is kept here and sent with every later request.
+public final class ApiClient {
+
+    public static final String SERVER_PROPERTY = "attendance.server";
+    private static final String SESSION_HEADER = "X-Session";
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    private static final String BASE = trimSlash(System.getProperty(SERVER_PROPERTY));
+    private static final HttpClient http = BASE == null ? null
+            : HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1) // The JDK server speaks nothing else
+                    .connectTimeout(Duration.ofSeconds(5))
+                    .build();
+    private static volatile String session;
+
+    // Error status from the server; Retry-After (seconds) is kept for 429 responses
+    public static class ApiException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+        private final long retryAfterSeconds;
+
+        ApiException(int status, String message, long retryAfterSeconds) {
+            super("HTTP " + status + ": " + message);
+            this.status = status;
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        public int getStatus() { return status; }
+        public long getRetryAfterSeconds() { return retryAfterSeconds; }
+    }
+
+    public interface Body {
+        void writeTo(DataOutputStream out) throws IOException;
+    }
+
+    private ApiClient() {}
+
+    public static boolean isEnabled() {
+        return BASE != null;
+    }
+
+    public static void setSession(String token) {
+        session = token;
+    }
+
+    // 'params' are name, value pairs for the query string; null values are left out
+    public static DataInputStream get(String path, Object... params) throws IOException {
+        return new DataInputStream(new ByteArrayInputStream(send(path, null, params)));
+    }
+
+    public static DataInputStream post(String path, Body body, Object... params) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        if (body != null) {
+            DataOutputStream out = new DataOutputStream(bytes);
+            body.writeTo(out);
+            out.flush();
+        }
+        return new DataInputStream(new ByteArrayInputStream(send(path, bytes.toByteArray(), params)));
+    }
+
+    public static String getText(String path, Object... params) throws IOException {
+        return new String(send(path, null, params), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] send(String path, byte[] body, Object... params) throws IOException {
+        if (!isEnabled()) throw new IllegalStateException("No " + SERVER_PROPERTY + " configured");
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(BASE + path + query(params))).timeout(TIMEOUT);
+        if (session != null) request.header(SESSION_HEADER, session);
+        if (body != null) {
+            request.header("Content-Type", "application/octet-stream").POST(HttpRequest.BodyPublishers.ofByteArray(body));
+        } else {
+            request.GET();
+        }
+
+        HttpResponse<byte[]> response;
+        try {
+            response = http.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted calling " + path);
+        }
+        if (response.statusCode() != 200) {
+            long retryAfter = response.headers().firstValue("Retry-After").map(Long::parseLong).orElse(0L);
+            throw new ApiException(response.statusCode(), new String(response.body(), StandardCharsets.UTF_8), retryAfter);
+        }
+        return response.body();
+    }
+
+    // --- Wire format shared with the server ---
+
+    // Both dictionaries, then the codec block; only codes used by 'records' are sent
+    public static void writeRecords(DataOutput out, List<AttendanceRecord> records) throws IOException {
+        AttendanceRecordCodec codec = new AttendanceRecordCodec(new StringDictionary(), new StringDictionary());
+        ByteArrayOutputStream block = new ByteArrayOutputStream();
+        codec.writeBlock(new DataOutputStream(block), records); // Fills the dictionaries
+        codec.getStudents().writeTo(out);
+        codec.getSubjects().writeTo(out);
+        out.write(block.toByteArray());
+    }
+
+    public static List<AttendanceRecord> readRecords(DataInput in) throws IOException {
+        AttendanceRecordCodec codec = new AttendanceRecordCodec(StringDictionary.readFrom(in), StringDictionary.readFrom(in));
+        return codec.readBlock(in);
+    }
+
+    public static void writeMarks(DataOutput out, Map<String, Boolean> marks) throws IOException {
+        AttendanceRecordCodec.writeVarInt(out, marks.size());
+        for (Map.Entry<String, Boolean> e : marks.entrySet()) {
+            out.writeUTF(e.getKey());
+            out.writeBoolean(e.getValue());
+        }
+    }
+
+    public static Map<String, Boolean> readMarks(DataInput in) throws IOException {
+        int n = AttendanceRecordCodec.readVarInt(in);
+        Map<String, Boolean> marks = new LinkedHashMap<>();
+        for (int i = 0; i < n; i++) marks.put(in.readUTF(), in.readBoolean());
+        return marks;
+    }
+
+    private static String query(Object... params) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i + 1 < params.length; i += 2) {
+            if (params[i + 1] == null) continue;
+            sb.append(sb.length() == 0 ? '?' : '&')
+              .append(params[i])
+              .append('=')
+              .append(URLEncoder.encode(String.valueOf(params[i + 1]), StandardCharsets.UTF_8));
+        }
+        return sb.toString();
+    }
+
+    private static String trimSlash(String url) {
+        if (url == null || url.isBlank()) return null;
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+}
@@ -1,36 +1,378 @@
 package repository;
 
+import model.AttendanceChanges;
+import model.AttendanceColumns;
 import model.AttendanceRecord;
+import model.AttendanceRollup;
+import model.AttendanceTotal;
+import model.AuditEntry;
+import model.StringDictionary;
 import java.sql.*;
 import java.util.*;
+import java.time.DayOfWeek;
 import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 public class AttendanceRepository {
 
+    // --- NEW: Listeners told about every batch of records that was saved ---
+    private final List<Consumer<List<AttendanceRecord>>> saveListeners = new CopyOnWriteArrayList<>();
+
+    public void addSaveListener(Consumer<List<AttendanceRecord>> listener) {
+        saveListeners.add(listener);
+    }
+
+    public void removeSaveListener(Consumer<List<AttendanceRecord>> listener) {
+        saveListeners.remove(listener);
+    }
+
+    // --- NEW: Listeners that also want each saved student's {present, total} right after
+    // the save, read inside the saving transaction (null when the caller couldn't take it) ---
+    private final List<BiConsumer<List<AttendanceRecord>, Map<String, long[]>>> countedSaveListeners = new CopyOnWriteArrayList<>();
+
+    public void addCountedSaveListener(BiConsumer<List<AttendanceRecord>, Map<String, long[]>> listener) {
+        countedSaveListeners.add(listener);
+    }
+
+    public void removeCountedSaveListener(BiConsumer<List<AttendanceRecord>, Map<String, long[]>> listener) {
+        countedSaveListeners.remove(listener);
+    }
+
+    protected void fireSaved(List<AttendanceRecord> saved) {
+        fireSaved(saved, null);
+    }
+
+    protected void fireSaved(List<AttendanceRecord> saved, Map<String, long[]> countsAfter) {
+        if (saved.isEmpty()) return;
+        for (Consumer<List<AttendanceRecord>> l : saveListeners) {
+            l.accept(saved);
+        }
+        for (BiConsumer<List<AttendanceRecord>, Map<String, long[]>> l : countedSaveListeners) {
+            l.accept(saved, countsAfter);
+        }
+    }
+
+    // student id -> {present, total} over final marks and archived counters, for every
+    // student with a mark in the session. Runs inside the saving transaction, so the
+    // counts include this save and nothing committed after it.
+    private Map<String, long[]> countsForSession(Connection conn, String subject, int sessionId) throws SQLException {
+        String inSession = " IN (SELECT student_key FROM AttendanceMark WHERE session_id = ?)";
+        String sql = "SELECT st.id, SUM(x.p), SUM(x.t) FROM ("
+                + " SELECT m.student_key, SUM(CASE WHEN m.is_present = 1 THEN 1 ELSE 0 END) AS p, COUNT(*) AS t"
+                + " FROM AttendanceMark m JOIN AttendanceSession s ON s.session_id = m.session_id"
+                + " WHERE s.subject = ? AND s.is_final = 1 AND m.student_key" + inSession
+                + " GROUP BY m.student_key"
+                + " UNION ALL"
+                + " SELECT k.student_key, SUM(ms.present_count), SUM(ms.total_count)"
+                + " FROM AttendanceMonthlySummary ms JOIN Students k ON k.id = ms.student_id"
+                + " WHERE ms.subject = ? AND k.student_key" + inSession
+                + " GROUP BY k.student_key"
+                + ") x JOIN Students st ON st.student_key = x.student_key GROUP BY st.id";
+        Map<String, long[]> counts = new HashMap<>();
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, subject);
+            stmt.setInt(2, sessionId);
+            stmt.setString(3, subject);
+            stmt.setInt(4, sessionId);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) counts.put(rs.getString(1), new long[]{rs.getLong(2), rs.getLong(3)});
+        }
+        return counts;
+    }
+
+    // --- NEW: Hot/cold split ---
+    // Closed months are moved from Attendance into the compressed AttendanceArchive
+    // table, with per-month counters in AttendanceMonthlySummary. Everything dated
+    // before 'archivedBefore' lives in the archive; queries that reach back that far
+    // read both tables, everything else only touches the small hot table.
+    //
+    // The horizon is checked inside the same query (a startup filter on the one-row
+    // ArchiveState table), not cached: another client may archive at any moment, and
+    // a stale horizon would silently skip the rows it just moved.
+    private static final LocalDate SQL_MIN_DATE = LocalDate.of(1, 1, 1);
+
+    private LocalDate getArchivedBefore(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT archived_before FROM ArchiveState WHERE id = 1")) {
+            return rs.next() ? rs.getDate(1).toLocalDate() : LocalDate.MIN;
+        }
+    }
+
+    // Rows dated on or after 'fromDate': the hot table, plus the archive when the
+    // shard's horizon lies after 'fromDate'
+    private static String sourceFor(LocalDate fromDate) {
+        LocalDate from = fromDate.isBefore(SQL_MIN_DATE) ? SQL_MIN_DATE : fromDate;
+        return "(SELECT record_id, student_id, subject, date, is_present FROM Attendance"
+                + " UNION ALL SELECT record_id, student_id, subject, date, is_present FROM AttendanceArchive"
+                + " WHERE EXISTS (SELECT 1 FROM ArchiveState WHERE id = 1 AND archived_before > '" + from + "')) a";
+    }
+
+    // Same rows keyed for bulk loads: hot marks carry their student_key, archived rows
+    // look it up by id (student_key stays NULL for students removed since)
+    private static String keyedSourceFor(LocalDate fromDate) {
+        LocalDate from = fromDate.isBefore(SQL_MIN_DATE) ? SQL_MIN_DATE : fromDate;
+        return "(SELECT m.student_key, st.id AS student_id, s.subject, s.date, m.is_present"
+                + " FROM AttendanceMark m JOIN AttendanceSession s ON s.session_id = m.session_id"
+                + " JOIN Students st ON st.student_key = m.student_key WHERE s.is_final = 1"
+                + " UNION ALL SELECT st.student_key, a.student_id, a.subject, a.date, a.is_present"
+                + " FROM AttendanceArchive a LEFT JOIN Students st ON st.id = a.student_id"
+                + " WHERE EXISTS (SELECT 1 FROM ArchiveState WHERE id = 1 AND archived_before > '" + from + "')) a";
+    }
+
+    // --- NEW: Shard routing ---
+    // A subject's rows live on one shard (see DatabaseConnection). Methods given a
+    // subject go straight to its shard. School-wide methods (no subject) cover every
+    // shard, or only the current one when the caller runs them inside
+    // DatabaseConnection.onShard()/scatter().
+    private static Connection connect(String subject) throws SQLException {
+        return subject != null ? DatabaseConnection.getConnection(subject) : DatabaseConnection.getConnection();
+    }
+
+    // Same routing for read-only queries; may be served by the shard's replica
+    private static Connection connectForRead(String subject) throws SQLException {
+        return subject != null ? DatabaseConnection.getReadConnection(subject) : DatabaseConnection.getReadConnection();
+    }
+
+    private static boolean allShards(String subject) {
+        return subject == null && !DatabaseConnection.isScoped();
+    }
+
+    private static int sum(List<Integer> counts) {
+        int total = 0;
+        for (int c : counts) total += c;
+        return total;
+    }
+
+    // --- NEW: Session-centric storage ---
+    // Attendance is a view over AttendanceSession (one row per subject and day) and
+    // AttendanceMark (session_id, student_key, is_present). Reads keep using the view;
+    // writes go to the two tables, and "already marked" is one seek on the session key.
     public void addRecord(AttendanceRecord record) {
-        if (recordExists(record.getStudentId(), record.getSubject(), record.getDate())) {
-            return;
+        addRecords(record.getSubject(), record.getDate(), List.of(record));
+    }
+
+    // Marks of one class session in a single transaction. Students who already have
+    // a mark in the session are skipped; listeners hear about the rows actually written.
+    // Returns the number of rows written, or -1 if the transaction failed or the day's
+    // session is an unsaved draft (its marking dialog owns the day until "Save").
+    public int addRecords(String subject, LocalDate date, List<AttendanceRecord> records) {
+        if (records.isEmpty()) return 0;
+        String sql = "INSERT INTO AttendanceMark (session_id, student_key, is_present)"
+                + " SELECT ?, ?, ? WHERE NOT EXISTS (SELECT 1 FROM AttendanceMark WHERE session_id = ? AND student_key = ?)";
+        List<AttendanceRecord> saved = new ArrayList<>();
+        Map<String, long[]> countsAfter = null;
+        try (Connection conn = DatabaseConnection.getConnection(subject)) {
+            boolean archived = date.isBefore(getArchivedBefore(conn));
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                int sessionId = sessionId(conn, subject, date, false);
+                if (sessionId < 0) {
+                    conn.rollback();
+                    return -1;
+                }
+                List<AttendanceRecord> batch = new ArrayList<>();
+                for (AttendanceRecord r : records) {
+                    if (archived && archivedRecordExists(conn, r.getStudentId(), subject, date)) continue;
+                    int key = StudentRepository.keyOf(conn, r.getStudentId());
+                    if (key < 0) continue; // No such student
+                    stmt.setInt(1, sessionId);
+                    stmt.setInt(2, key);
+                    stmt.setBoolean(3, r.isPresent());
+                    stmt.setInt(4, sessionId);
+                    stmt.setInt(5, key);
+                    stmt.addBatch();
+                    batch.add(r);
+                }
+                int[] counts = stmt.executeBatch();
+                if (!countedSaveListeners.isEmpty()) countsAfter = countsForSession(conn, subject, sessionId);
+                conn.commit();
+                for (int i = 0; i < counts.length; i++) {
+                    if (counts[i] > 0) saved.add(batch.get(i));
+                }
+            } catch (SQLException e) {
+                conn.rollback();
+                StudentRepository.clearKeys(); // In case a key was retired by another client
+                throw e;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return -1;
         }
+        AuditJournal.recordMarks(saved);
+        fireSaved(saved, countsAfter);
+        return saved.size();
+    }
 
-        String sql = "INSERT INTO Attendance (student_id, subject, date, is_present) VALUES (?, ?, ?, ?)";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+    // Id of the (subject, date) session, created on first use (as a draft if 'draft').
+    // -1 if the day's session is in the other state: already final when a draft is wanted,
+    // or still a draft when final marks are written (they would stay hidden until the
+    // draft is finalized, which then reports them again). Must run inside the caller's
+    // transaction so the range lock keeps a second client from inserting it too.
+    private int sessionId(Connection conn, String subject, LocalDate date, boolean draft) throws SQLException {
+        String sql = "SET NOCOUNT ON;"
+                + " IF NOT EXISTS (SELECT 1 FROM AttendanceSession WITH (UPDLOCK, HOLDLOCK) WHERE subject = ? AND date = ?)"
+                + "   INSERT INTO AttendanceSession (subject, date, is_final) VALUES (?, ?, " + (draft ? 0 : 1) + ");"
+                + " SELECT session_id, is_final FROM AttendanceSession WHERE subject = ? AND date = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            java.sql.Date d = java.sql.Date.valueOf(date);
+            for (int i = 1; i <= 5; i += 2) {
+                stmt.setString(i, subject);
+                stmt.setDate(i + 1, d);
+            }
+            ResultSet rs = stmt.executeQuery();
+            if (!rs.next()) throw new SQLException("Could not create session " + subject + " " + date);
+            if (rs.getBoolean(2) == draft) return -1;
+            return rs.getInt(1);
+        }
+    }
+
+    // --- NEW: Draft sessions for autosave ---
+    // The marking dialog streams ticks into a draft session (is_final = 0) while the
+    // teacher works. Drafts are hidden from the Attendance view, counts and delta sync
+    // until finalizeSession() flips the flag, so a crash mid-class loses nothing and
+    // "Save" only has to update one row.
+
+    // Id of the subject's draft session for the day, created if there is none yet;
+    // -1 if the day was already saved (or the database couldn't be reached)
+    public int openDraftSession(String subject, LocalDate date) {
+        try (Connection conn = DatabaseConnection.getConnection(subject)) {
+            conn.setAutoCommit(false);
+            try {
+                int id = sessionId(conn, subject, date, true);
+                conn.commit();
+                return id;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return -1;
+    }
+
+    // student id -> present for every mark already in the session
+    public Map<String, Boolean> getSessionMarks(String subject, int sessionId) {
+        Map<String, Boolean> marks = new LinkedHashMap<>();
+        try (Connection conn = DatabaseConnection.getConnection(subject);
+             PreparedStatement stmt = conn.prepareStatement("SELECT student_key, is_present FROM AttendanceMark WHERE session_id = ?")) {
             
-            stmt.setString(1, record.getStudentId());
-            stmt.setString(2, record.getSubject());
-            stmt.setDate(3, java.sql.Date.valueOf(record.getDate()));
-            stmt.setBoolean(4, record.isPresent());
-            stmt.executeUpdate();
+            stmt.setInt(1, sessionId);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                String studentId = StudentRepository.idOf(conn, rs.getInt(1));
+                if (studentId != null) marks.put(studentId, rs.getBoolean(2));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return marks;
+    }
+
+    // Inserts or updates the given marks of a draft in one batch; false if nothing was written,
+    // including when the session has been finalized meanwhile (its marks are then fixed)
+    public boolean saveDraftMarks(String subject, int sessionId, Map<String, Boolean> marks) {
+        // UPDLOCK, HOLDLOCK: a finalize can't slip in between this check and the marks
+        String sqlCheck = "SELECT 1 FROM AttendanceSession WITH (UPDLOCK, HOLDLOCK) WHERE session_id = ? AND is_final = 0";
+        String sql = "MERGE AttendanceMark AS t"
+                + " USING (SELECT ? AS session_id, ? AS student_key, ? AS is_present) AS s"
+                + " ON t.session_id = s.session_id AND t.student_key = s.student_key"
+                + " WHEN MATCHED AND t.is_present <> s.is_present THEN UPDATE SET is_present = s.is_present"
+                + " WHEN NOT MATCHED THEN INSERT (session_id, student_key, is_present) VALUES (s.session_id, s.student_key, s.is_present);";
+        try (Connection conn = DatabaseConnection.getConnection(subject)) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement check = conn.prepareStatement(sqlCheck);
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
+                check.setInt(1, sessionId);
+                if (!check.executeQuery().next()) {
+                    conn.rollback();
+                    return false;
+                }
+                for (Map.Entry<String, Boolean> e : marks.entrySet()) {
+                    int key = StudentRepository.keyOf(conn, e.getKey());
+                    if (key < 0) continue; // Student deleted meanwhile
+                    stmt.setInt(1, sessionId);
+                    stmt.setInt(2, key);
+                    stmt.setBoolean(3, e.getValue());
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+                conn.commit();
+                return true;
+            } catch (SQLException e) {
+                conn.rollback();
+                StudentRepository.clearKeys();
+                throw e;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    // Makes a draft visible: flips is_final and touches its marks so their row versions
+    // are newer than anything delta sync or the rollup job has seen. Listeners hear about
+    // every mark of the session. False if the draft was already final, isn't the subject's
+    // session for 'date' (events and the journal would name the wrong day), or the update failed.
+    public boolean finalizeSession(String subject, LocalDate date, int sessionId) {
+        List<AttendanceRecord> saved = new ArrayList<>();
+        Map<String, long[]> countsAfter = null;
+        try (Connection conn = DatabaseConnection.getConnection(subject)) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement flip = conn.prepareStatement("UPDATE AttendanceSession SET is_final = 1"
+                     + " OUTPUT inserted.subject, inserted.date WHERE session_id = ? AND is_final = 0");
+                 PreparedStatement touch = conn.prepareStatement("UPDATE AttendanceMark SET is_present = is_present WHERE session_id = ?")) {
+                
+                flip.setInt(1, sessionId);
+                ResultSet flipped = flip.executeQuery();
+                if (!flipped.next() || !subject.equalsIgnoreCase(flipped.getString(1))
+                        || !date.equals(flipped.getObject(2, LocalDate.class))) {
+                    conn.rollback();
+                    return false;
+                }
+                touch.setInt(1, sessionId);
+                touch.executeUpdate();
+                if (!countedSaveListeners.isEmpty()) countsAfter = countsForSession(conn, subject, sessionId);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+        for (Map.Entry<String, Boolean> e : getSessionMarks(subject, sessionId).entrySet()) {
+            saved.add(new AttendanceRecord(e.getKey(), subject, date, e.getValue()));
+        }
+        AuditJournal.record(AuditEntry.Operation.SESSION_FINALIZE, subject, null, date, false, saved.size(), null);
+        AuditJournal.recordMarks(saved);
+        fireSaved(saved, countsAfter);
+        return true;
+    }
+
+    // Has attendance been saved for this subject on this day (including archived days)?
+    // An unsaved draft doesn't count.
+    public boolean isMarked(String subject, LocalDate date) {
+        try (Connection conn = DatabaseConnection.getConnection(subject);
+             PreparedStatement stmt = conn.prepareStatement("SELECT 1 FROM AttendanceSession WHERE subject = ? AND date = ? AND is_final = 1")) {
             
+            stmt.setString(1, subject);
+            stmt.setDate(2, java.sql.Date.valueOf(date));
+            return stmt.executeQuery().next();
         } catch (SQLException e) {
             e.printStackTrace();
         }
+        return false;
     }
     
-    private boolean recordExists(String studentId, String subject, LocalDate date) {
-        String sql = "SELECT COUNT(*) FROM Attendance WHERE student_id=? AND subject=? AND date=?";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+    // Marks of closed months live in AttendanceArchive rather than AttendanceMark
+    private boolean archivedRecordExists(Connection conn, String studentId, String subject, LocalDate date) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                 "SELECT COUNT(*) FROM AttendanceArchive WHERE student_id=? AND subject=? AND date=?")) {
             
             stmt.setString(1, studentId);
             stmt.setString(2, subject);
@@ -39,18 +381,19 @@ public class AttendanceRepository {
             if (rs.next()) {
                 return rs.getInt(1) > 0;
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
         }
         return false;
     }
 
     public List<AttendanceRecord> getAllRecords() {
         List<AttendanceRecord> list = new ArrayList<>();
-        String sql = "SELECT * FROM Attendance";
-        try (Connection conn = DatabaseConnection.getConnection();
+        if (!DatabaseConnection.isScoped()) {
+            for (List<AttendanceRecord> shard : DatabaseConnection.scatter(this::getAllRecords)) list.addAll(shard);
+            return list;
+        }
+        try (Connection conn = DatabaseConnection.getReadConnection();
              Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+             ResultSet rs = stmt.executeQuery("SELECT * FROM " + sourceFor(LocalDate.MIN))) {
             
             while (rs.next()) {
                 list.add(new AttendanceRecord(
@@ -69,11 +412,10 @@ public class AttendanceRepository {
     // --- NEW METHOD: Get Records by Date Range ---
     public List<AttendanceRecord> getRecordsByDateRange(String subject, LocalDate fromDate, LocalDate toDate) {
         List<AttendanceRecord> list = new ArrayList<>();
-        // SQL Query to filter by date
-        String sql = "SELECT * FROM Attendance WHERE subject = ? AND date >= ? AND date <= ? ORDER BY date ASC";
-        
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = DatabaseConnection.getReadConnection(subject);
+             // SQL Query to filter by date
+             PreparedStatement stmt = conn.prepareStatement(
+                 "SELECT * FROM " + sourceFor(fromDate) + " WHERE subject = ? AND date >= ? AND date <= ? ORDER BY date ASC")) {
             
             stmt.setString(1, subject);
             stmt.setDate(2, java.sql.Date.valueOf(fromDate));
@@ -94,32 +436,475 @@ public class AttendanceRepository {
         return list;
     }
 
+    // --- NEW: Stream records (all subjects when subject is null) ordered by subject, student and date ---
+    // Rows are handed to the consumer as they are read, nothing is buffered here.
+    // Shards are read one after another, so the consumer is only called from one thread.
+    public void streamRecordsByDateRange(String subject, LocalDate fromDate, LocalDate toDate, Consumer<AttendanceRecord> consumer) {
+        if (allShards(subject)) {
+            DatabaseConnection.onEachShard(() -> streamRecordsByDateRange(null, fromDate, toDate, consumer));
+            return;
+        }
+        try (Connection conn = connectForRead(subject);
+             PreparedStatement stmt = conn.prepareStatement(
+                 "SELECT student_id, subject, date, is_present FROM " + sourceFor(fromDate)
+                 + " WHERE date >= ? AND date <= ?"
+                 + (subject != null ? " AND subject = ?" : "")
+                 + " ORDER BY subject, student_id, date")) {
+            
+            stmt.setDate(1, java.sql.Date.valueOf(fromDate));
+            stmt.setDate(2, java.sql.Date.valueOf(toDate));
+            if (subject != null) stmt.setString(3, subject);
+            stmt.setFetchSize(1000);
+            
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                consumer.accept(new AttendanceRecord(
+                    rs.getString("student_id"),
+                    rs.getString("subject"),
+                    rs.getDate("date").toLocalDate(),
+                    rs.getBoolean("is_present")
+                ));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // --- NEW: Stream per-student totals (all subjects when subject is null) ---
+    // Grouped on the server, so one row per student and subject comes back instead of
+    // every mark. Pairs with fewer than minSessions sessions in the range are left out.
+    public void streamTotalsByDateRange(String subject, LocalDate fromDate, LocalDate toDate, int minSessions, Consumer<AttendanceTotal> consumer) {
+        if (allShards(subject)) {
+            DatabaseConnection.onEachShard(() -> streamTotalsByDateRange(null, fromDate, toDate, minSessions, consumer));
+            return;
+        }
+        try (Connection conn = connectForRead(subject);
+             PreparedStatement stmt = conn.prepareStatement(
+                 "SELECT student_id, subject, SUM(CASE WHEN is_present = 1 THEN 1 ELSE 0 END), COUNT(*)"
+                 + " FROM " + sourceFor(fromDate)
+                 + " WHERE date >= ? AND date <= ? AND student_id IS NOT NULL AND subject IS NOT NULL"
+                 + (subject != null ? " AND subject = ?" : "")
+                 + " GROUP BY student_id, subject HAVING COUNT(*) >= ?")) {
+            
+            int i = 1;
+            stmt.setDate(i++, java.sql.Date.valueOf(fromDate));
+            stmt.setDate(i++, java.sql.Date.valueOf(toDate));
+            if (subject != null) stmt.setString(i++, subject);
+            stmt.setInt(i, Math.max(1, minSessions));
+            stmt.setFetchSize(1000);
+            
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                consumer.accept(new AttendanceTotal(rs.getString(1), rs.getString(2), rs.getInt(3), rs.getInt(4)));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // --- NEW: Columnar bulk load (all subjects when subject is null), ordered by subject, student and date ---
+    // Student ids and subjects are dictionary-encoded into dictionaries shared by every load,
+    // so a large range keeps only primitive columns in memory.
+    private static final StringDictionary studentCodes = new StringDictionary();
+    private static final StringDictionary subjectCodes = new StringDictionary();
+
+    public AttendanceColumns getColumnsByDateRange(String subject, LocalDate fromDate, LocalDate toDate) {
+        return getColumnsByDateRange(subject, fromDate, toDate, false);
+    }
+
+    // dateOrder = true sorts by date instead (report listings; per shard when subject is null).
+    // School-wide loads read every shard in parallel and append them in shard order;
+    // a subject lives on one shard, so each subject's rows stay contiguous.
+    public AttendanceColumns getColumnsByDateRange(String subject, LocalDate fromDate, LocalDate toDate, boolean dateOrder) {
+        AttendanceColumns cols = new AttendanceColumns(studentCodes, subjectCodes);
+        if (allShards(subject)) {
+            for (AttendanceColumns shard : DatabaseConnection.scatter(() -> getColumnsByDateRange(null, fromDate, toDate, dateOrder))) {
+                cols.addAll(shard);
+            }
+            return cols;
+        }
+        // Rows come back as ints (student_key, epoch day) so the loop allocates nothing per row.
+        // The subject is sent only where it changes from the previous row, and the id only
+        // for archived rows whose student has been removed.
+        String order = dateOrder ? "date, subject, student_id" : "subject, student_id, date";
+        try (Connection conn = connectForRead(subject);
+             PreparedStatement stmt = conn.prepareStatement(
+                 "SELECT student_key,"
+                 + (subject != null ? " NULL" : " CASE WHEN LAG(subject) OVER (ORDER BY " + order + ") = subject THEN NULL ELSE subject END")
+                 + ", DATEDIFF(day, '1970-01-01', date), is_present,"
+                 + " CASE WHEN student_key IS NULL THEN student_id END"
+                 + " FROM " + keyedSourceFor(fromDate)
+                 + " WHERE date >= ? AND date <= ?"
+                 + (subject != null ? " AND subject = ?" : "")
+                 + " ORDER BY " + order)) {
+            
+            stmt.setDate(1, java.sql.Date.valueOf(fromDate));
+            stmt.setDate(2, java.sql.Date.valueOf(toDate));
+            if (subject != null) stmt.setString(3, subject);
+            stmt.setFetchSize(1000);
+            
+            int[] codeByKey = new int[256]; // student_key -> student code, 0 until first seen
+            int subjectCode = subject != null ? subjectCodes.encode(subject) : StringDictionary.NULL_CODE;
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                int key = rs.getInt(1);
+                int studentCode;
+                if (rs.wasNull()) {
+                    studentCode = studentCodes.encode(rs.getString(5));
+                } else {
+                    if (key >= codeByKey.length) codeByKey = Arrays.copyOf(codeByKey, Math.max(key + 1, codeByKey.length * 2));
+                    studentCode = codeByKey[key];
+                    if (studentCode == StringDictionary.NULL_CODE) {
+                        studentCode = codeByKey[key] = studentCodes.encode(StudentRepository.idOf(conn, key));
+                    }
+                }
+                if (subject == null) {
+                    String changed = rs.getString(2);
+                    if (changed != null) subjectCode = subjectCodes.encode(changed);
+                }
+                cols.addCodes(studentCode, subjectCode, rs.getInt(3), rs.getBoolean(4));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return cols;
+    }
+
     public double getAttendancePercentage(String studentId, String subject) {
-        String sqlTotal = "SELECT COUNT(*) FROM Attendance WHERE student_id=? AND subject=?";
-        String sqlPresent = "SELECT COUNT(*) FROM Attendance WHERE student_id=? AND subject=? AND is_present=1";
+        long[] counts = getAttendanceCounts(studentId, subject);
+        if (counts[1] == 0) return 0.0;
+        return (double) counts[0] / counts[1] * 100.0;
+    }
+    
+    // --- NEW: {present, total} over hot rows plus the archived monthly counters ---
+    public long[] getAttendanceCounts(String studentId, String subject) {
+        String sql = "SELECT SUM(p), SUM(t) FROM ("
+                + " SELECT SUM(CASE WHEN m.is_present = 1 THEN 1 ELSE 0 END) AS p, COUNT(*) AS t"
+                + " FROM AttendanceMark m JOIN AttendanceSession s ON s.session_id = m.session_id"
+                + " WHERE m.student_key=? AND s.subject=? AND s.is_final = 1"
+                + " UNION ALL"
+                + " SELECT SUM(present_count), SUM(total_count) FROM AttendanceMonthlySummary WHERE student_id=? AND subject=?"
+                + ") x";
         
-        try (Connection conn = DatabaseConnection.getConnection()) {
-            long total = 0;
-            try (PreparedStatement stmt = conn.prepareStatement(sqlTotal)) {
-                stmt.setString(1, studentId);
+        try (Connection conn = DatabaseConnection.getReadConnection(subject)) {
+            int key = StudentRepository.keyOf(conn, studentId); // -1 matches no marks
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setInt(1, key);
                 stmt.setString(2, subject);
+                stmt.setString(3, studentId);
+                stmt.setString(4, subject);
                 ResultSet rs = stmt.executeQuery();
-                if (rs.next()) total = rs.getLong(1);
+                if (rs.next()) return new long[]{rs.getLong(1), rs.getLong(2)};
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return new long[]{0, 0};
+    }
+    
+    // --- NEW: Delta sync support ---
+    // row_ver (rowversion) changes on every insert and edit, so a client can fetch only
+    // what changed since its last look. Reads stop below MIN_ACTIVE_ROWVERSION(): a row
+    // written by a transaction that is still open gets a version below later commits,
+    // and a watermark past it would skip the row for good. Deleted hot rows come from
+    // AttendanceMarkDeleted, filled by a trigger (archive moves are not recorded there).
+    
+    // Every hot row of the subject, with ids and versions
+    public AttendanceChanges getHotRecords(String subject) {
+        return getChangesSince(subject, 0);
+    }
+    
+    // Rows added or edited, and rows deleted, with a row version above afterRowVersion
+    public AttendanceChanges getChangesSince(String subject, long afterRowVersion) {
+        List<AttendanceRecord> list = new ArrayList<>();
+        List<Integer> deleted = new ArrayList<>();
+        // Reads the int keys and resolves them through StudentRepository's map instead of joining Students
+        String sqlRows = "SELECT m.record_id, CAST(m.row_ver AS bigint) AS ver, m.student_key, s.subject, s.date, m.is_present"
+                + " FROM AttendanceMark m JOIN AttendanceSession s ON s.session_id = m.session_id"
+                + " WHERE s.subject = ? AND s.is_final = 1"
+                + " AND m.row_ver > CAST(CAST(? AS bigint) AS binary(8)) AND m.row_ver < CAST(CAST(? AS bigint) AS binary(8))";
+        String sqlDeleted = "SELECT record_id FROM AttendanceMarkDeleted WHERE subject = ?"
+                + " AND row_ver > CAST(CAST(? AS bigint) AS binary(8)) AND row_ver < CAST(CAST(? AS bigint) AS binary(8))";
+        
+        try (Connection conn = DatabaseConnection.getReadConnection(subject);
+             Statement capStmt = conn.createStatement();
+             PreparedStatement rowsStmt = conn.prepareStatement(sqlRows);
+             PreparedStatement deletedStmt = conn.prepareStatement(sqlDeleted)) {
+            
+            long cap;
+            try (ResultSet rs = capStmt.executeQuery("SELECT CAST(MIN_ACTIVE_ROWVERSION() AS bigint)")) {
+                if (!rs.next()) return new AttendanceChanges(list, deleted, afterRowVersion);
+                cap = rs.getLong(1);
             }
+            if (cap - 1 <= afterRowVersion) return new AttendanceChanges(list, deleted, afterRowVersion);
             
-            if (total == 0) return 0.0;
+            rowsStmt.setString(1, subject);
+            rowsStmt.setLong(2, afterRowVersion);
+            rowsStmt.setLong(3, cap);
+            ResultSet rs = rowsStmt.executeQuery();
+            while (rs.next()) {
+                String studentId = StudentRepository.idOf(conn, rs.getInt("student_key"));
+                if (studentId == null) continue; // Deleted while we were reading
+                list.add(new AttendanceRecord(
+                    rs.getInt("record_id"),
+                    rs.getLong("ver"),
+                    studentId,
+                    rs.getString("subject"),
+                    rs.getDate("date").toLocalDate(),
+                    rs.getBoolean("is_present")
+                ));
+            }
             
-            long present = 0;
-            try (PreparedStatement stmt = conn.prepareStatement(sqlPresent)) {
-                stmt.setString(1, studentId);
-                stmt.setString(2, subject);
-                ResultSet rs = stmt.executeQuery();
-                if (rs.next()) present = rs.getLong(1);
+            deletedStmt.setString(1, subject);
+            deletedStmt.setLong(2, afterRowVersion);
+            deletedStmt.setLong(3, cap);
+            ResultSet drs = deletedStmt.executeQuery();
+            while (drs.next()) deleted.add(drs.getInt(1));
+            return new AttendanceChanges(list, deleted, cap - 1);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        // Nothing is trusted from a failed read; the caller asks again from the same version
+        return new AttendanceChanges(new ArrayList<>(), new ArrayList<>(), afterRowVersion);
+    }
+    
+    // {present, total} per student from the archived monthly counters
+    public Map<String, long[]> getArchivedCounts(String subject) {
+        Map<String, long[]> counts = new HashMap<>();
+        String sql = "SELECT student_id, SUM(present_count), SUM(total_count) FROM AttendanceMonthlySummary"
+                + " WHERE subject = ? GROUP BY student_id";
+        
+        try (Connection conn = DatabaseConnection.getReadConnection(subject);
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            stmt.setString(1, subject);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                counts.put(rs.getString(1), new long[]{rs.getLong(2), rs.getLong(3)});
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return counts;
+    }
+    
+    // --- NEW: Recompute the archived monthly counters from AttendanceArchive ---
+    // Repairs drift (e.g. after manual edits to the archive). Returns the number of counter rows.
+    public int rebuildArchiveSummary() {
+        if (!DatabaseConnection.isScoped()) return sum(DatabaseConnection.scatter(this::rebuildArchiveSummary));
+        String sqlClear = "DELETE FROM AttendanceMonthlySummary";
+        String sqlRebuild = "INSERT INTO AttendanceMonthlySummary (student_id, subject, month_start, present_count, total_count)"
+                + " SELECT student_id, subject, DATEFROMPARTS(YEAR(date), MONTH(date), 1),"
+                + "        SUM(CASE WHEN is_present = 1 THEN 1 ELSE 0 END), COUNT(*)"
+                + " FROM AttendanceArchive WHERE student_id IS NOT NULL AND subject IS NOT NULL"
+                + " GROUP BY student_id, subject, DATEFROMPARTS(YEAR(date), MONTH(date), 1)";
+        
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement()) {
+            
+            conn.setAutoCommit(false);
+            stmt.executeUpdate(sqlClear);
+            int rows = stmt.executeUpdate(sqlRebuild);
+            conn.commit();
+            return rows;
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return 0;
+    }
+    
+    // --- NEW: Move every row dated before 'cutoff' into the archive ---
+    // 'cutoff' should be the first day of a month so each archived month is complete.
+    // Returns the number of rows moved.
+    public int archiveBefore(LocalDate cutoff) {
+        if (!DatabaseConnection.isScoped()) return sum(DatabaseConnection.scatter(() -> archiveBefore(cutoff)));
+        String sqlSummary = "MERGE AttendanceMonthlySummary AS t"
+                + " USING (SELECT st.id AS student_id, x.subject, DATEFROMPARTS(YEAR(x.date), MONTH(x.date), 1) AS month_start,"
+                + "        SUM(CASE WHEN m.is_present = 1 THEN 1 ELSE 0 END) AS present_count, COUNT(*) AS total_count"
+                + "        FROM AttendanceMark m WITH (TABLOCKX) JOIN AttendanceSession x ON x.session_id = m.session_id"
+                + "        JOIN Students st ON st.student_key = m.student_key"
+                + "        WHERE x.date < ? AND x.is_final = 1"
+                + "        GROUP BY st.id, x.subject, DATEFROMPARTS(YEAR(x.date), MONTH(x.date), 1)) AS s"
+                + " ON t.student_id = s.student_id AND t.subject = s.subject AND t.month_start = s.month_start"
+                + " WHEN MATCHED THEN UPDATE SET present_count = t.present_count + s.present_count, total_count = t.total_count + s.total_count"
+                + " WHEN NOT MATCHED THEN INSERT (student_id, subject, month_start, present_count, total_count)"
+                + "      VALUES (s.student_id, s.subject, s.month_start, s.present_count, s.total_count);";
+        // Sessions stay behind so isMarked() still answers for archived days
+        String sqlMove = "DELETE m"
+                + " OUTPUT deleted.record_id, st.id, x.subject, x.date, deleted.is_present"
+                + " INTO AttendanceArchive (record_id, student_id, subject, date, is_present)"
+                + " FROM AttendanceMark m JOIN AttendanceSession x ON x.session_id = m.session_id"
+                + " JOIN Students st ON st.student_key = m.student_key"
+                + " WHERE x.date < ? AND x.is_final = 1";
+        String sqlState = "UPDATE ArchiveState SET archived_before = ? WHERE id = 1 AND archived_before < ?";
+        
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement summary = conn.prepareStatement(sqlSummary);
+                 PreparedStatement move = conn.prepareStatement(sqlMove);
+                 PreparedStatement state = conn.prepareStatement(sqlState)) {
+                
+                java.sql.Date cut = java.sql.Date.valueOf(cutoff);
+                summary.setDate(1, cut);
+                summary.executeUpdate();
+                move.setDate(1, cut);
+                int moved = move.executeUpdate();
+                state.setDate(1, cut);
+                state.setDate(2, cut);
+                state.executeUpdate();
+                conn.commit();
+                
+                AuditJournal.record(AuditEntry.Operation.ARCHIVE, null, null, cutoff, false, moved, DatabaseConnection.shardOf(conn));
+                return moved;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return 0;
+    }
+    
+    // --- NEW: Precomputed daily/weekly rollups (AttendanceRollup) ---
+    // Weeks start on Monday; 1900-01-01 was a Monday, so the week start is computed
+    // from the day count since then and doesn't depend on the server's DATEFIRST.
+    private static final String WEEK_START = "DATEADD(day, -(DATEDIFF(day, '19000101', date) % 7), date)";
+    
+    // Recomputes the rollups of every day in [from, to] and every week touching it.
+    // 'subject' may be null for all subjects. Returns the number of rollup rows written,
+    // or -1 if the refresh failed (on any shard) and was rolled back.
+    public int refreshRollups(String subject, LocalDate from, LocalDate to) {
+        if (allShards(subject)) {
+            List<Integer> counts = DatabaseConnection.scatter(() -> refreshRollups(null, from, to));
+            return counts.contains(-1) ? -1 : sum(counts);
+        }
+        LocalDate weekFrom = from.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        LocalDate weekTo = to.with(TemporalAdjusters.nextOrSame(DayOfWeek.SUNDAY));
+        String subjectFilter = subject == null ? "" : " AND subject = ?";
+        
+        try (Connection conn = connect(subject)) {
+            String source = sourceFor(weekFrom);
+            // TABLOCKX serialises refreshes from several clients, so two of them
+            // can't both delete and then both insert the same period
+            String sqlClear = "DELETE FROM AttendanceRollup WITH (TABLOCKX)"
+                    + " WHERE period_type = ? AND period_start BETWEEN ? AND ?" + subjectFilter;
+            String sqlDaily = "INSERT INTO AttendanceRollup (subject, period_type, period_start, present_count, absent_count)"
+                    + " SELECT subject, 'D', date, SUM(CASE WHEN is_present = 1 THEN 1 ELSE 0 END), SUM(CASE WHEN is_present = 1 THEN 0 ELSE 1 END)"
+                    + " FROM " + source + " WHERE date BETWEEN ? AND ? AND subject IS NOT NULL" + subjectFilter
+                    + " GROUP BY subject, date";
+            String sqlWeekly = "INSERT INTO AttendanceRollup (subject, period_type, period_start, present_count, absent_count)"
+                    + " SELECT subject, 'W', " + WEEK_START + ", SUM(CASE WHEN is_present = 1 THEN 1 ELSE 0 END), SUM(CASE WHEN is_present = 1 THEN 0 ELSE 1 END)"
+                    + " FROM " + source + " WHERE date BETWEEN ? AND ? AND subject IS NOT NULL" + subjectFilter
+                    + " GROUP BY subject, " + WEEK_START;
+            
+            conn.setAutoCommit(false);
+            try (PreparedStatement clear = conn.prepareStatement(sqlClear);
+                 PreparedStatement daily = conn.prepareStatement(sqlDaily);
+                 PreparedStatement weekly = conn.prepareStatement(sqlWeekly)) {
+                
+                setRollupRange(clear, String.valueOf(AttendanceRollup.DAILY), from, to, subject);
+                clear.executeUpdate();
+                setRollupRange(clear, String.valueOf(AttendanceRollup.WEEKLY), weekFrom, weekTo, subject);
+                clear.executeUpdate();
+                
+                setRollupRange(daily, null, from, to, subject);
+                int rows = daily.executeUpdate();
+                setRollupRange(weekly, null, weekFrom, weekTo, subject);
+                rows += weekly.executeUpdate();
+                conn.commit();
+                return rows;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return -1;
+    }
+    
+    private static void setRollupRange(PreparedStatement stmt, String periodType, LocalDate from, LocalDate to, String subject) throws SQLException {
+        int i = 1;
+        if (periodType != null) stmt.setString(i++, periodType);
+        stmt.setDate(i++, java.sql.Date.valueOf(from));
+        stmt.setDate(i++, java.sql.Date.valueOf(to));
+        if (subject != null) stmt.setString(i, subject);
+    }
+    
+    // Rollups of one period type whose period starts in [from, to], by subject then date.
+    // 'subject' may be null for all subjects.
+    public List<AttendanceRollup> getRollups(String subject, char periodType, LocalDate from, LocalDate to) {
+        List<AttendanceRollup> list = new ArrayList<>();
+        if (allShards(subject)) {
+            for (List<AttendanceRollup> shard : DatabaseConnection.scatter(() -> getRollups(null, periodType, from, to))) list.addAll(shard);
+            list.sort(Comparator.comparing(AttendanceRollup::getSubject).thenComparing(AttendanceRollup::getPeriodStart));
+            return list;
+        }
+        String sql = "SELECT subject, period_start, present_count, absent_count FROM AttendanceRollup"
+                + " WHERE period_type = ? AND period_start BETWEEN ? AND ?" + (subject == null ? "" : " AND subject = ?")
+                + " ORDER BY subject, period_start";
+        
+        try (Connection conn = connectForRead(subject);
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            setRollupRange(stmt, String.valueOf(periodType), from, to, subject);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                list.add(new AttendanceRollup(
+                    rs.getString("subject"),
+                    periodType,
+                    rs.getDate("period_start").toLocalDate(),
+                    rs.getInt("present_count"),
+                    rs.getInt("absent_count")
+                ));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return list;
+    }
+    
+    // Highest row version on the current shard below which every write has committed.
+    // Not @@DBTS: that includes versions held by open transactions, whose rows would
+    // then commit below a watermark already moved past them. -1 if it could not be read.
+    public long getCommittedRowVersion() {
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT CAST(MIN_ACTIVE_ROWVERSION() AS bigint) - 1")) {
+            if (rs.next()) return rs.getLong(1);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return -1;
+    }
+    
+    // {earliest, latest} date per subject among hot rows of the current shard written,
+    // edited or deleted with a row version in (afterRowVersion, upToRowVersion];
+    // null if the query failed, so callers don't mistake an error for "nothing changed"
+    public Map<String, LocalDate[]> getTouchedDateRanges(long afterRowVersion, long upToRowVersion) {
+        Map<String, LocalDate[]> ranges = new TreeMap<>();
+        String range = " WHERE row_ver > CAST(CAST(? AS bigint) AS binary(8)) AND row_ver <= CAST(CAST(? AS bigint) AS binary(8))";
+        String sql = "SELECT subject, MIN(date), MAX(date) FROM ("
+                + " SELECT subject, date FROM Attendance" + range + " AND subject IS NOT NULL AND date IS NOT NULL"
+                + " UNION ALL SELECT subject, date FROM AttendanceMarkDeleted" + range
+                + ") t GROUP BY subject";
+        
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            stmt.setLong(1, afterRowVersion);
+            stmt.setLong(2, upToRowVersion);
+            stmt.setLong(3, afterRowVersion);
+            stmt.setLong(4, upToRowVersion);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                ranges.put(rs.getString(1), new LocalDate[]{rs.getDate(2).toLocalDate(), rs.getDate(3).toLocalDate()});
             }
-            return (double) present / total * 100.0;
         } catch (SQLException e) {
             e.printStackTrace();
+            return null;
         }
-        return 0.0;
+        return ranges;
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
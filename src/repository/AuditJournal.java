@@ -0,0 +1,286 @@
+package repository;
+
+import model.AttendanceRecord;
+import model.AuditEntry;
+import model.AuditEntry.Operation;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// Append-only record of who changed attendance and the roster. Callers only build
+// an entry and queue it; one writer thread copies entries into memory-mapped files
+// under audit/ (-Dattendance.audit.dir), so a write costs no I/O on the caller's
+// thread and survives the process dying (the OS still has the pages).
+//
+// Every file holds a 128 byte header and up to ENTRIES_PER_FILE entries of 128 bytes:
+//
+//   long millis | byte op | byte present | short 0 | int epochDay | int count |
+//   actor[24] | subject[32] | key[24] | detail[28]      (UTF-8, zero padded, truncated)
+//
+// millis is written last, so an entry with millis == 0 was never completed. Entries in
+// a file are in time order, and files are named after their first entry
+// (audit-<millis>-<pid>.bin), so read() can skip files and binary-search within one.
+// Each process writes its own files; nothing is ever rewritten.
+public final class AuditJournal {
+
+    private static final int MAGIC = 0x41554431; // "AUD1"
+    private static final short VERSION = 1;
+    private static final int ENTRY_SIZE = 128;
+    private static final int HEADER_SIZE = 128;
+    private static final int ENTRIES_PER_FILE = 65_536; // 8 MB per file
+    private static final int QUEUE_CAPACITY = 16_384;
+    private static final long FORCE_INTERVAL_MS = 1_000;
+
+    private static final int ACTOR_LEN = 24, SUBJECT_LEN = 32, KEY_LEN = 24, DETAIL_LEN = 28;
+    private static final int NO_DATE = Integer.MIN_VALUE;
+
+    private static final Path DIR = Paths.get(System.getProperty("attendance.audit.dir", "audit"));
+    private static final long PID = ProcessHandle.current().pid();
+
+    private static volatile String actor = "system";
+    private static final ThreadLocal<String> requestActor = new ThreadLocal<>();
+    private static final BlockingQueue<AuditEntry> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private static final Object fileLock = new Object();
+    private static volatile Thread writer;
+
+    // Guarded by fileLock, used only by the writer (and flush)
+    private static MappedByteBuffer current;
+    private static int written;
+    private static long lastMillis;
+
+    private AuditJournal() {}
+
+    // Who subsequent changes are attributed to (set at login; "system" until then).
+    // Inside a request (see setRequestActor) this only changes the request's actor.
+    public static void setActor(String name) {
+        if (requestActor.get() != null) requestActor.set(name);
+        else actor = name;
+    }
+
+    public static String getActor() {
+        String a = requestActor.get();
+        return a != null ? a : actor;
+    }
+
+    // Attributes changes made on the calling thread to 'name' instead of the process-wide
+    // actor, for a server handling requests of many users; null ends the override
+    public static void setRequestActor(String name) {
+        if (name == null) requestActor.remove();
+        else requestActor.set(name);
+    }
+
+    public static void record(Operation op, String subject, String key, LocalDate date, boolean present, int count, String detail) {
+        AuditEntry e = new AuditEntry(Instant.now(), op, getActor(), subject, key, date, present, count, detail);
+        if (writer == null) startWriter(); // Checked first so marks don't all queue on the class lock
+        if (!queue.offer(e)) {
+            try {
+                queue.put(e); // Writer is behind: wait rather than lose the entry
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public static void record(Operation op, String subject, String key, String detail) {
+        record(op, subject, key, null, false, 0, detail);
+    }
+
+    static void recordMarks(List<AttendanceRecord> saved) {
+        for (AttendanceRecord r : saved) {
+            record(Operation.MARK, r.getSubject(), r.getStudentId(), r.getDate(), r.isPresent(), 1, null);
+        }
+    }
+
+    // Waits (up to a couple of seconds) for queued entries and forces them to disk
+    public static void flush() {
+        long deadline = System.currentTimeMillis() + 2_000;
+        while (!queue.isEmpty() && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        synchronized (fileLock) {
+            if (current != null) current.force();
+        }
+    }
+
+    private static synchronized void startWriter() {
+        if (writer != null) return;
+        Thread t = new Thread(AuditJournal::drain, "audit-journal");
+        t.setDaemon(true);
+        t.start();
+        writer = t;
+        Runtime.getRuntime().addShutdownHook(new Thread(AuditJournal::flush, "audit-journal-flush"));
+    }
+
+    private static void drain() {
+        boolean dirty = false;
+        long lastForce = System.currentTimeMillis();
+        while (true) {
+            try {
+                AuditEntry e = queue.poll(FORCE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                synchronized (fileLock) {
+                    if (e != null) {
+                        append(e);
+                        dirty = true;
+                    }
+                    // Force when idle, or at least once a second under steady load
+                    if (dirty && (e == null || System.currentTimeMillis() - lastForce >= FORCE_INTERVAL_MS)) {
+                        if (current != null) current.force();
+                        dirty = false;
+                        lastForce = System.currentTimeMillis();
+                    }
+                }
+            } catch (InterruptedException ex) {
+                return;
+            } catch (IOException | RuntimeException ex) {
+                ex.printStackTrace(); // Keep going; the next entry opens a fresh file
+                synchronized (fileLock) {
+                    current = null;
+                }
+                dirty = false; // Nothing left to force; the failed file is abandoned
+            }
+        }
+    }
+
+    private static void append(AuditEntry e) throws IOException {
+        // Entries are queued by many threads; keep each file in time order
+        long millis = Math.max(e.getAt().toEpochMilli(), lastMillis);
+        if (current == null || written == ENTRIES_PER_FILE) openFile(millis);
+
+        int base = HEADER_SIZE + written * ENTRY_SIZE;
+        ByteBuffer b = current;
+        b.put(base + 8, (byte) e.getOperation().ordinal());
+        b.put(base + 9, (byte) (e.isPresent() ? 1 : 0));
+        b.putInt(base + 12, e.getDate() != null ? (int) e.getDate().toEpochDay() : NO_DATE);
+        b.putInt(base + 16, e.getCount());
+        putString(b, base + 20, ACTOR_LEN, e.getActor());
+        putString(b, base + 44, SUBJECT_LEN, e.getSubject());
+        putString(b, base + 76, KEY_LEN, e.getKey());
+        putString(b, base + 100, DETAIL_LEN, e.getDetail());
+        b.putLong(base, millis); // Last: marks the entry complete
+        written++;
+        lastMillis = millis;
+    }
+
+    private static void openFile(long firstMillis) throws IOException {
+        if (current != null) current.force();
+        Files.createDirectories(DIR);
+        Path file = DIR.resolve(String.format("audit-%013d-%d.bin", firstMillis, PID));
+        for (int n = 1; Files.exists(file); n++) {
+            file = DIR.resolve(String.format("audit-%013d-%d-%d.bin", firstMillis, PID, n));
+        }
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            current = ch.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) ENTRIES_PER_FILE * ENTRY_SIZE);
+        }
+        current.putInt(0, MAGIC);
+        current.putShort(4, VERSION);
+        current.putShort(6, (short) ENTRY_SIZE);
+        current.putInt(8, ENTRIES_PER_FILE);
+        current.putLong(12, PID);
+        written = 0;
+    }
+
+    private static void putString(ByteBuffer b, int offset, int length, String value) {
+        if (value == null) return; // Mapped files start zeroed
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int n = Math.min(bytes.length, length);
+        // Don't cut a multi-byte character in half
+        if (n < bytes.length) {
+            while (n > 0 && (bytes[n] & 0xC0) == 0x80) n--;
+        }
+        b.put(offset, bytes, 0, n);
+    }
+
+    private static String getString(ByteBuffer b, int offset, int length) {
+        int n = 0;
+        while (n < length && b.get(offset + n) != 0) n++;
+        if (n == 0) return null;
+        byte[] bytes = new byte[n];
+        b.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // --- Reading ---
+
+    // Entries in [from, to] from every file in the journal directory, oldest first
+    public static List<AuditEntry> read(Instant from, Instant to) throws IOException {
+        List<AuditEntry> list = new ArrayList<>();
+        if (!Files.isDirectory(DIR)) return list;
+        long fromMillis = from.toEpochMilli();
+        long toMillis = to.toEpochMilli();
+
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> dir = Files.newDirectoryStream(DIR, "audit-*.bin")) {
+            for (Path p : dir) files.add(p);
+        }
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            long firstMillis = Long.parseLong(name.substring(6, name.indexOf('-', 6)));
+            if (firstMillis > toMillis) continue;
+            readFile(file, fromMillis, toMillis, list);
+        }
+        list.sort(Comparator.comparing(AuditEntry::getAt)); // Files of several processes interleave
+        return list;
+    }
+
+    private static void readFile(Path file, long fromMillis, long toMillis, List<AuditEntry> out) throws IOException {
+        MappedByteBuffer b;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (ch.size() < HEADER_SIZE) return;
+            b = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+        if (b.getInt(0) != MAGIC || b.getShort(6) != ENTRY_SIZE) return;
+        int capacity = Math.min(b.getInt(8), (b.capacity() - HEADER_SIZE) / ENTRY_SIZE);
+
+        // Completed entries form a prefix; find its end, then the first entry >= fromMillis
+        int count = firstIndex(b, capacity, Long.MIN_VALUE, true);
+        int i = firstIndex(b, count, fromMillis, false);
+        Operation[] ops = Operation.values();
+        for (; i < count; i++) {
+            int base = HEADER_SIZE + i * ENTRY_SIZE;
+            long millis = b.getLong(base);
+            if (millis > toMillis) break;
+            int op = b.get(base + 8);
+            if (op < 0 || op >= ops.length) continue; // Written by a newer version
+            int epochDay = b.getInt(base + 12);
+            out.add(new AuditEntry(
+                Instant.ofEpochMilli(millis),
+                ops[op],
+                getString(b, base + 20, ACTOR_LEN),
+                getString(b, base + 44, SUBJECT_LEN),
+                getString(b, base + 76, KEY_LEN),
+                epochDay == NO_DATE ? null : LocalDate.ofEpochDay(epochDay),
+                b.get(base + 9) != 0,
+                b.getInt(base + 16),
+                getString(b, base + 100, DETAIL_LEN)
+            ));
+        }
+    }
+
+    // Binary search over entries [0, n): the first incomplete entry if 'findEnd',
+    // otherwise the first entry with millis >= 'millis'
+    private static int firstIndex(ByteBuffer b, int n, long millis, boolean findEnd) {
+        int lo = 0, hi = n;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            long at = b.getLong(HEADER_SIZE + mid * ENTRY_SIZE);
+            boolean before = findEnd ? at != 0 : at < millis;
+            if (before) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+}
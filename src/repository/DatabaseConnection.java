@@ -1,16 +1,601 @@
 package repository;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 public class DatabaseConnection {
-    // Connection Settings
+    // Connection Settings (used when there is no shard configuration file)
     private static final String URL = "jdbc:sqlserver://localhost:1433;databaseName=AttendanceDB;encrypt=true;trustServerCertificate=true;";
     private static final String USER = "sa"; // Default SQL User
     private static final String PASSWORD = "123";
+    private static final String DRIVER_CLASS = "com.microsoft.sqlserver.jdbc.SQLServerDriver";
 
+    // --- NEW: Shards ---
+    // Subjects (and with them their students, teachers and attendance) can live on
+    // separate databases. The layout is read from database.properties, or the file
+    // named by -Dattendance.db.config:
+    //
+    //   shards=main,science
+    //   shard.main.url=jdbc:sqlserver://db1:1433;databaseName=AttendanceDB;...
+    //   shard.main.user=sa
+    //   shard.main.password=123
+    //   shard.science.url=...
+    //   shard.science.migrate=false     (skip DatabaseSchema: the schema is managed elsewhere)
+    //   subject.Physics=science
+    //   subject.Chemistry=science
+    //   default.shard=main              (subjects not listed; defaults to the first shard)
+    //
+    // Without the file there is one shard, "main", using the settings above.
+    //
+    // --- NEW: Read replicas ---
+    // A shard may also name a read-only replica (user/password default to the primary's):
+    //
+    //   shard.main.replica.url=jdbc:sqlserver://db1-ro:1433;databaseName=AttendanceDB;ApplicationIntent=ReadOnly;...
+    //   replica.maxLagMs=5000           (older than this and reads go to the primary)
+    //   replica.heartbeatMs=1000
+    //
+    // Writes always use getConnection(). Read-only queries (reports, percentages,
+    // rosters) use getReadConnection(), which picks the replica unless
+    //  - the caller wrote to the shard within the last maxLagMs (read-your-writes; the
+    //    caller is the whole process unless a server names one per request, see setCaller()),
+    //  - the replica is more than maxLagMs behind, or its lag hasn't been measured lately,
+    //  - or the replica can't be reached;
+    // in those cases the read falls back to the primary. Lag is measured by a heartbeat
+    // row (ReplicaHeartbeat) stamped on the primary and read back from the replica;
+    // both timestamps come from the primary's clock. getRouteMetrics() reports
+    // checkouts, hold times and fallbacks per route.
+    private static final String CONFIG_FILE = "database.properties";
+    public static final String DEFAULT_SHARD = "main";
+    private static final long DEFAULT_MAX_LAG_MS = 5_000;
+    private static final long DEFAULT_HEARTBEAT_MS = 1_000;
+
+    // --- NEW: Small connection pool (one per shard) ---
+    // Repositories still use try-with-resources; close() on a pooled connection
+    // hands the physical connection back instead of closing it, so every query
+    // after the first skips the TCP/TLS handshake and login.
+    private static final int MAX_IDLE = 8;
+    private static final long VALIDATE_AFTER_MS = 30_000; // Re-check connections idle longer than this
+
+    private static final class IdleConnection {
+        final Connection physical;
+        final long idleSince;
+
+        IdleConnection(Connection physical) {
+            this.physical = physical;
+            this.idleSince = System.currentTimeMillis();
+        }
+    }
+
+    // One database endpoint with its own idle connections
+    private static final class Pool {
+        final String url;
+        final String user;
+        final String password;
+        final boolean readOnly;
+        final RouteMetrics metrics;
+        final ConcurrentLinkedDeque<IdleConnection> idle = new ConcurrentLinkedDeque<>();
+
+        Pool(String route, String url, String user, String password, boolean readOnly) {
+            this.url = url;
+            this.user = user;
+            this.password = password;
+            this.readOnly = readOnly;
+            this.metrics = new RouteMetrics(route);
+        }
+    }
+
+    private static final class Shard {
+        final String name;
+        final Pool primary;
+        final Pool replica; // null when the shard has none
+        final boolean migrate;
+        volatile boolean schemaChecked = false;
+
+        // Replica state, kept current by the heartbeat monitor
+        final Map<Object, Long> lastWriteBy = new ConcurrentHashMap<>(); // Caller -> time of its last write
+        volatile long replicaLagMs = Long.MAX_VALUE;
+        volatile long replicaCheckedAt = 0;
+        volatile boolean monitorStarted = false;
+
+        Shard(String name, Pool primary, Pool replica, boolean migrate) {
+            this.name = name;
+            this.primary = primary;
+            this.replica = replica;
+            this.migrate = migrate;
+        }
+    }
+
+    private static final Map<String, Shard> shards = new LinkedHashMap<>();
+    private static final Map<String, String> shardBySubject = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    private static final String defaultShard;
+    private static final long maxLagMs;
+    private static final long heartbeatMs;
+    // Set when the configuration file can't be used; there are then no shards, and
+    // every connection attempt fails with this message (see checkConfig())
+    private static final String configError;
+
+    // Shard used by getConnection() on this thread; set by onShard()/scatter()
+    private static final ThreadLocal<Shard> currentShard = new ThreadLocal<>();
+
+    // Caller whose writes this thread's reads must see; the whole process unless set
+    private static final Object PROCESS = new Object();
+    private static final ThreadLocal<Object> currentCaller = new ThreadLocal<>();
+
+    // Errors are kept rather than thrown: an exception here would surface as an
+    // ExceptionInInitializerError at the first, unrelated database call
+    static {
+        String def = DEFAULT_SHARD;
+        long lag = DEFAULT_MAX_LAG_MS;
+        long beat = DEFAULT_HEARTBEAT_MS;
+        String error = null;
+        try {
+            Properties config = loadConfig();
+            if (config == null) {
+                shards.put(DEFAULT_SHARD, new Shard(DEFAULT_SHARD, new Pool(DEFAULT_SHARD + "/primary", URL, USER, PASSWORD, false), null, true));
+            } else {
+                def = applyConfig(config);
+                lag = Long.parseLong(config.getProperty("replica.maxLagMs", String.valueOf(DEFAULT_MAX_LAG_MS)).trim());
+                beat = Long.parseLong(config.getProperty("replica.heartbeatMs", String.valueOf(DEFAULT_HEARTBEAT_MS)).trim());
+            }
+        } catch (IllegalStateException | IllegalArgumentException e) { // NumberFormatException included
+            shards.clear();
+            shardBySubject.clear();
+            error = "Bad database configuration in " + configPath() + ": " + e.getMessage();
+        }
+        defaultShard = def;
+        maxLagMs = lag;
+        heartbeatMs = beat;
+        configError = error;
+    }
+
+    // Fills the shard maps from the file and returns the default shard's name
+    private static String applyConfig(Properties config) {
+        for (String name : config.getProperty("shards", DEFAULT_SHARD).split(",")) {
+            name = name.trim();
+            if (name.isEmpty()) continue;
+            String prefix = "shard." + name + ".";
+            String user = config.getProperty(prefix + "user", USER);
+            String password = config.getProperty(prefix + "password", PASSWORD);
+            Pool primary = new Pool(name + "/primary", config.getProperty(prefix + "url", URL), user, password, false);
+            Pool replica = null;
+            if (config.getProperty(prefix + "replica.url") != null) {
+                replica = new Pool(name + "/replica", config.getProperty(prefix + "replica.url"),
+                        config.getProperty(prefix + "replica.user", user),
+                        config.getProperty(prefix + "replica.password", password), true);
+            }
+            shards.put(name, new Shard(name, primary, replica,
+                    Boolean.parseBoolean(config.getProperty(prefix + "migrate", "true"))));
+        }
+        if (shards.isEmpty()) throw new IllegalStateException("No shards listed");
+        for (String key : config.stringPropertyNames()) {
+            if (!key.startsWith("subject.")) continue;
+            String shard = config.getProperty(key).trim();
+            if (!shards.containsKey(shard)) throw new IllegalStateException("Unknown shard '" + shard + "' for " + key);
+            shardBySubject.put(key.substring("subject.".length()), shard);
+        }
+        String def = config.getProperty("default.shard", shards.keySet().iterator().next()).trim();
+        if (!shards.containsKey(def)) throw new IllegalStateException("Unknown default.shard '" + def + "'");
+        return def;
+    }
+
+    private static Path configPath() {
+        return Paths.get(System.getProperty("attendance.db.config", CONFIG_FILE));
+    }
+
+    private static Properties loadConfig() {
+        Path path = configPath();
+        if (!Files.exists(path)) return null;
+        Properties p = new Properties();
+        try (InputStream in = Files.newInputStream(path)) {
+            p.load(in);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read " + path, e);
+        }
+        return p;
+    }
+
+    // For startup: fails with a readable message if the configuration file is unusable
+    public static void checkConfig() {
+        if (configError != null) throw new IllegalStateException(configError);
+    }
+
+    private static void requireConfig() throws SQLException {
+        if (configError != null) throw new SQLException(configError);
+    }
+
+    // Connection to the shard in scope (see onShard/scatter), otherwise the default shard
     public static Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(URL, USER, PASSWORD);
+        requireConfig();
+        return checkout(scopedShard(), scopedShard().primary, true);
+    }
+
+    // Connection to the shard holding this subject's data
+    public static Connection getConnection(String subject) throws SQLException {
+        requireConfig();
+        Shard shard = shards.get(shardFor(subject));
+        return checkout(shard, shard.primary, true);
+    }
+
+    // --- NEW: Read-only connections, served by the replica when it is fresh enough ---
+    // Only for queries that never write; use getConnection() for anything else.
+    public static Connection getReadConnection() throws SQLException {
+        requireConfig();
+        return readConnection(scopedShard());
+    }
+
+    public static Connection getReadConnection(String subject) throws SQLException {
+        requireConfig();
+        return readConnection(shards.get(shardFor(subject)));
+    }
+
+    private static Shard scopedShard() {
+        Shard shard = currentShard.get();
+        return shard != null ? shard : shards.get(defaultShard);
+    }
+
+    private static Connection readConnection(Shard shard) throws SQLException {
+        if (shard.replica == null) return checkout(shard, shard.primary, true);
+        if (!shard.monitorStarted) startMonitor(shard); // Checked first so reads don't all queue on the lock
+
+        long now = System.currentTimeMillis();
+        Long lastWrite = shard.lastWriteBy.get(caller());
+        if (lastWrite != null && now - lastWrite < maxLagMs) {
+            shard.primary.metrics.fallbackRecentWrite.increment();
+        } else if (shard.replicaLagMs > maxLagMs || now - shard.replicaCheckedAt > 3 * heartbeatMs) {
+            shard.primary.metrics.fallbackStale.increment();
+        } else {
+            try {
+                return checkout(shard, shard.replica, false);
+            } catch (SQLException e) {
+                shard.replicaCheckedAt = 0; // Wait for the monitor to see it again
+                shard.primary.metrics.fallbackUnavailable.increment();
+            }
+        }
+        return checkout(shard, shard.primary, true);
+    }
+
+    // Per route ("<shard>/primary", "<shard>/replica"), in shard order
+    public static List<RouteMetrics> getRouteMetrics() {
+        List<RouteMetrics> list = new ArrayList<>();
+        for (Shard shard : shards.values()) {
+            list.add(shard.primary.metrics);
+            if (shard.replica != null) list.add(shard.replica.metrics);
+        }
+        return list;
+    }
+
+    // Current replica lag per shard in ms (-1 if unknown or no replica)
+    public static Map<String, Long> getReplicaLag() {
+        Map<String, Long> lag = new LinkedHashMap<>();
+        for (Shard shard : shards.values()) {
+            boolean known = shard.replica != null && shard.replicaLagMs != Long.MAX_VALUE;
+            lag.put(shard.name, known ? shard.replicaLagMs : -1L);
+        }
+        return lag;
+    }
+
+    // --- Replica heartbeat monitor (one daemon thread for all shards) ---
+    private static ScheduledExecutorService monitor;
+
+    private static synchronized void startMonitor(Shard shard) {
+        if (shard.monitorStarted) return;
+        if (monitor == null) {
+            monitor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "replica-monitor");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        monitor.scheduleWithFixedDelay(() -> measureLag(shard), 0, heartbeatMs, TimeUnit.MILLISECONDS);
+        shard.monitorStarted = true;
+    }
+
+    private static void measureLag(Shard shard) {
+        try {
+            Timestamp primaryBeat;
+            try (Connection conn = checkout(shard, shard.primary, false);
+                 Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("UPDATE ReplicaHeartbeat SET beat = SYSUTCDATETIME() OUTPUT inserted.beat WHERE id = 1")) {
+                if (!rs.next()) return;
+                primaryBeat = rs.getTimestamp(1);
+            }
+            Timestamp replicaBeat;
+            try (Connection conn = checkout(shard, shard.replica, false);
+                 Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT beat FROM ReplicaHeartbeat WHERE id = 1")) {
+                if (!rs.next()) return;
+                replicaBeat = rs.getTimestamp(1);
+            }
+            shard.replicaLagMs = Math.max(0, primaryBeat.getTime() - replicaBeat.getTime());
+            shard.replicaCheckedAt = System.currentTimeMillis();
+        } catch (SQLException e) {
+            shard.replicaLagMs = Long.MAX_VALUE; // Unreachable: reads stay on the primary
+        }
+    }
+
+    public static String shardFor(String subject) {
+        if (subject == null) return defaultShard;
+        return shardBySubject.getOrDefault(subject.trim(), defaultShard);
+    }
+
+    public static List<String> getShardNames() {
+        return new ArrayList<>(shards.keySet());
+    }
+
+    public static boolean isSharded() {
+        return shards.size() > 1;
+    }
+
+    // Runs 'task' with getConnection() pointing at the named shard
+    public static <T> T onShard(String shardName, Supplier<T> task) {
+        Shard shard = shards.get(shardName);
+        if (shard == null) throw new IllegalArgumentException("Unknown shard: " + shardName);
+        Shard previous = currentShard.get();
+        currentShard.set(shard);
+        try {
+            return task.get();
+        } finally {
+            if (previous == null) currentShard.remove(); else currentShard.set(previous);
+        }
+    }
+
+    // --- NEW: Read-your-writes per caller ---
+    // A desktop client is one user, so each of its writes sends all of its reads to the
+    // primary for maxLagMs. A server working for many users (AttendanceApiServer) names
+    // the caller for each request instead, so one terminal's marking only pins that
+    // terminal's reads and reporting keeps using the replica.
+    public static void setCaller(Object caller) {
+        currentCaller.set(caller);
+    }
+
+    public static void clearCaller() {
+        currentCaller.remove();
+    }
+
+    private static Object caller() {
+        Object caller = currentCaller.get();
+        return caller != null ? caller : PROCESS;
+    }
+
+    private static void noteWrite(Shard shard, Object caller) {
+        long now = System.currentTimeMillis();
+        shard.lastWriteBy.put(caller, now);
+        // Callers come and go (API sessions); forget the ones whose window has passed
+        if (shard.lastWriteBy.size() > 256) shard.lastWriteBy.values().removeIf(t -> now - t >= maxLagMs);
+    }
+
+    // True inside onShard()/scatter(), where getConnection() is pinned to one shard
+    public static boolean isScoped() {
+        return currentShard.get() != null;
+    }
+
+    // Runs 'task' once per shard, one shard after another (for consumers that
+    // aren't thread-safe, e.g. streaming into one writer)
+    public static void onEachShard(Runnable task) {
+        for (String name : shards.keySet()) {
+            onShard(name, () -> {
+                task.run();
+                return null;
+            });
+        }
+    }
+
+    // Scatter-gather: runs 'task' once per shard, in parallel on virtual threads,
+    // and returns the results in shard order. With a single shard it just runs here.
+    public static <T> List<T> scatter(Supplier<T> task) {
+        if (shards.size() == 1) {
+            return Collections.singletonList(onShard(defaultShard, task));
+        }
+        List<Future<T>> futures = new ArrayList<>();
+        Object caller = currentCaller.get(); // The shard threads read and write for the same caller
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (String name : shards.keySet()) {
+                futures.add(executor.submit(() -> {
+                    if (caller != null) currentCaller.set(caller);
+                    return onShard(name, task);
+                }));
+            }
+            List<T> results = new ArrayList<>();
+            for (Future<T> f : futures) {
+                results.add(f.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while querying shards", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    // trackWrites: note writes made on this connection for read-your-writes routing
+    private static Connection checkout(Shard shard, Pool pool, boolean trackWrites) throws SQLException {
+        IdleConnection ic;
+        while ((ic = pool.idle.pollFirst()) != null) {
+            if (isUsable(ic)) return wrap(shard, pool, ic.physical, trackWrites);
+            closeQuietly(ic.physical);
+        }
+        Connection physical;
+        try {
+            physical = DriverManager.getConnection(pool.url, pool.user, pool.password);
+        } catch (SQLException e) {
+            pool.metrics.recordError();
+            throw e;
+        }
+        if (pool.readOnly) {
+            physical.setReadOnly(true);
+        } else if (!shard.schemaChecked) {
+            ensureSchema(shard, physical);
+        }
+        return wrap(shard, pool, physical, trackWrites);
+    }
+
+    // Brings each shard up to the current schema once per process
+    private static void ensureSchema(Shard shard, Connection physical) throws SQLException {
+        synchronized (shard) {
+            if (shard.schemaChecked) return;
+            if (shard.migrate) {
+                try {
+                    DatabaseSchema.apply(physical);
+                } catch (SQLException e) {
+                    closeQuietly(physical);
+                    throw e;
+                }
+            }
+            shard.schemaChecked = true;
+        }
+    }
+
+    // Loads the JDBC driver class ahead of the first query
+    public static void loadDriver() {
+        try {
+            Class.forName(DRIVER_CLASS);
+        } catch (ClassNotFoundException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Opens up to 'count' connections per shard and parks them in the pools
+    public static void prime(int count) {
+        scatter(() -> {
+            List<Connection> opened = new ArrayList<>();
+            try {
+                for (int i = 0; i < count; i++) {
+                    opened.add(getConnection());
+                }
+                Shard shard = scopedShard();
+                if (shard.replica != null) {
+                    for (int i = 0; i < count; i++) {
+                        opened.add(checkout(shard, shard.replica, false));
+                    }
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+            } finally {
+                for (Connection c : opened) closeQuietly(c);
+            }
+            return null;
+        });
+    }
+
+    private static boolean isUsable(IdleConnection ic) {
+        try {
+            if (ic.physical.isClosed()) return false;
+            if (System.currentTimeMillis() - ic.idleSince < VALIDATE_AFTER_MS) return true;
+            return ic.physical.isValid(2);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private static void release(Pool pool, Connection physical) {
+        try {
+            if (physical.isClosed()) return;
+            if (!physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+            if (pool.idle.size() < MAX_IDLE) {
+                pool.idle.offerFirst(new IdleConnection(physical));
+                return;
+            }
+        } catch (SQLException e) {
+            // Broken connection, drop it
+        }
+        closeQuietly(physical);
+    }
+
+    // Name of the shard a pooled connection belongs to (for per-shard caches)
+    static String shardOf(Connection conn) {
+        if (Proxy.isProxyClass(conn.getClass()) && Proxy.getInvocationHandler(conn) instanceof PooledHandler) {
+            return ((PooledHandler) Proxy.getInvocationHandler(conn)).shard.name;
+        }
+        return defaultShard;
+    }
+
+    private static final class PooledHandler implements InvocationHandler {
+        final Shard shard;
+        final Pool pool;
+        final Connection physical;
+        final boolean trackWrites;
+        final Object caller = caller(); // Connections are used on the thread that checked them out
+        final long checkedOutAt = System.nanoTime();
+        private boolean closed = false;
+
+        PooledHandler(Shard shard, Pool pool, Connection physical, boolean trackWrites) {
+            this.shard = shard;
+            this.pool = pool;
+            this.physical = physical;
+            this.trackWrites = trackWrites;
+            pool.metrics.recordCheckout();
+        }
+
+        @Override
+        public Object invoke(Object proxy, java.lang.reflect.Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        pool.metrics.recordRelease(System.nanoTime() - checkedOutAt);
+                        release(pool, physical);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || physical.isClosed();
+                default:
+                    if (closed) throw new SQLException("Connection has been returned to the pool");
+                    if (trackWrites && isWrite(method.getName(), args)) noteWrite(shard, caller);
+                    try {
+                        return method.invoke(physical, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        }
+    }
+
+    // A transaction, or a statement prepared from INSERT/UPDATE/DELETE/MERGE SQL
+    private static boolean isWrite(String method, Object[] args) {
+        if (method.equals("setAutoCommit")) return Boolean.FALSE.equals(args[0]);
+        if (!method.equals("prepareStatement") && !method.equals("prepareCall")) return false;
+        String sql = ((String) args[0]).trim();
+        int end = 0;
+        while (end < sql.length() && Character.isLetter(sql.charAt(end))) end++;
+        String verb = sql.substring(0, end).toUpperCase();
+        return verb.equals("INSERT") || verb.equals("UPDATE") || verb.equals("DELETE") || verb.equals("MERGE");
+    }
+
+    private static Connection wrap(Shard shard, Pool pool, Connection physical, boolean trackWrites) {
+        return (Connection) Proxy.newProxyInstance(
+                DatabaseConnection.class.getClassLoader(), new Class<?>[]{Connection.class}, new PooledHandler(shard, pool, physical, trackWrites));
+    }
+
+    private static void closeQuietly(Connection c) {
+        try {
+            c.close();
+        } catch (SQLException ignored) {}
     }
 }
\ No newline at end of file
@@ -0,0 +1,217 @@
+package repository;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+// Applies schema changes made after the original install script, in order.
+// Every step runs once per database; the applied version is kept in SchemaVersion.
+// DatabaseConnection calls apply() on the first connection it opens.
+class DatabaseSchema {
+
+    // Moves AttendanceMark's identity past every record_id in use, archived ones included:
+    // a new mark reusing an archived id would collide with AttendanceArchive's key when
+    // it is archived, and hide from the delete trigger. Never lowers the identity.
+    private static final String RESEED_MARK_IDS =
+            "DECLARE @max int = (SELECT MAX(id) FROM (SELECT MAX(record_id) AS id FROM AttendanceMark"
+                + " UNION ALL SELECT MAX(record_id) FROM AttendanceArchive) x);"
+                + " DECLARE @last sql_variant = (SELECT last_value FROM sys.identity_columns WHERE object_id = OBJECT_ID('dbo.AttendanceMark'));"
+                + " IF @max IS NOT NULL AND (@last IS NULL OR CAST(@last AS int) < @max)"
+                + " BEGIN"
+                // On a table that never had a row the next id is the reseed value itself
+                + "   IF @last IS NULL SET @max += 1;"
+                + "   DBCC CHECKIDENT ('AttendanceMark', RESEED, @max) WITH NO_INFOMSGS;"
+                + " END";
+
+    private static final String[][] STEPS = {
+        // 1: Hot/cold archive for closed months
+        {
+            "CREATE INDEX IX_Attendance_subject_date ON Attendance (subject, date) INCLUDE (student_id, is_present)",
+            "CREATE INDEX IX_Attendance_student_subject ON Attendance (student_id, subject) INCLUDE (is_present)",
+            "CREATE TABLE AttendanceArchive ("
+                + " record_id int NOT NULL PRIMARY KEY,"
+                + " student_id varchar(20) NULL,"
+                + " subject varchar(50) NULL,"
+                + " date date NULL,"
+                + " is_present bit NULL"
+                + ") WITH (DATA_COMPRESSION = PAGE)",
+            "CREATE INDEX IX_AttendanceArchive_subject_date ON AttendanceArchive (subject, date) WITH (DATA_COMPRESSION = PAGE)",
+            "CREATE TABLE AttendanceMonthlySummary ("
+                + " student_id varchar(20) NOT NULL,"
+                + " subject varchar(50) NOT NULL,"
+                + " month_start date NOT NULL,"
+                + " present_count int NOT NULL,"
+                + " total_count int NOT NULL,"
+                + " PRIMARY KEY (student_id, subject, month_start))",
+            "CREATE TABLE ArchiveState ("
+                + " id int NOT NULL PRIMARY KEY CHECK (id = 1),"
+                + " archived_before date NOT NULL)",
+            "INSERT INTO ArchiveState (id, archived_before) VALUES (1, '1900-01-01')"
+        },
+        // 2: rowversion on hot rows so clients can fetch edits as well as new rows
+        {
+            "ALTER TABLE Attendance ADD row_ver rowversion NOT NULL",
+            "CREATE INDEX IX_Attendance_subject_row_ver ON Attendance (subject, row_ver)"
+        },
+        // 3: Precomputed daily/weekly rollups and state for the background jobs that fill them
+        {
+            "CREATE TABLE AttendanceRollup ("
+                + " subject varchar(50) NOT NULL,"
+                + " period_type char(1) NOT NULL CHECK (period_type IN ('D', 'W')),"
+                + " period_start date NOT NULL,"
+                + " present_count int NOT NULL,"
+                + " absent_count int NOT NULL,"
+                + " PRIMARY KEY (period_type, period_start, subject))",
+            "CREATE TABLE JobState ("
+                + " job_name varchar(50) NOT NULL PRIMARY KEY,"
+                + " last_run datetime2 NULL,"
+                + " watermark bigint NOT NULL DEFAULT 0)",
+            "INSERT INTO JobState (job_name) VALUES ('attendance-rollup')"
+        },
+        // 4: Heartbeat row stamped on the primary and read back from replicas to measure their lag
+        {
+            "CREATE TABLE ReplicaHeartbeat ("
+                + " id int NOT NULL PRIMARY KEY CHECK (id = 1),"
+                + " beat datetime2 NOT NULL)",
+            "INSERT INTO ReplicaHeartbeat (id, beat) VALUES (1, SYSUTCDATETIME())"
+        },
+        // 5: Session-centric attendance. One AttendanceSession row per (subject, date) and one
+        //    narrow AttendanceMark row per student; record_id values carry over so delta-sync
+        //    watermarks stay valid. The old table is kept as Attendance_legacy and an
+        //    Attendance view with the old columns takes its place for readers.
+        {
+            "CREATE TABLE AttendanceSession ("
+                + " session_id int IDENTITY(1,1) NOT NULL PRIMARY KEY,"
+                + " subject varchar(50) NOT NULL,"
+                + " date date NOT NULL,"
+                + " CONSTRAINT UQ_AttendanceSession_subject_date UNIQUE (subject, date))",
+            "CREATE TABLE AttendanceMark ("
+                + " record_id int IDENTITY(1,1) NOT NULL,"
+                + " session_id int NOT NULL REFERENCES AttendanceSession (session_id),"
+                + " student_id varchar(20) NOT NULL REFERENCES Students (id) ON DELETE CASCADE,"
+                + " is_present bit NOT NULL,"
+                + " row_ver rowversion NOT NULL,"
+                + " PRIMARY KEY (session_id, student_id))",
+            "CREATE UNIQUE INDEX IX_AttendanceMark_record_id ON AttendanceMark (record_id)",
+            "CREATE INDEX IX_AttendanceMark_student ON AttendanceMark (student_id) INCLUDE (is_present)",
+            "CREATE INDEX IX_AttendanceMark_row_ver ON AttendanceMark (row_ver)",
+            "INSERT INTO AttendanceSession (subject, date)"
+                + " SELECT DISTINCT subject, date FROM Attendance WHERE subject IS NOT NULL AND date IS NOT NULL"
+                + " UNION SELECT DISTINCT subject, date FROM AttendanceArchive WHERE subject IS NOT NULL AND date IS NOT NULL",
+            // Duplicate marks for the same student and session keep the latest one
+            "SET IDENTITY_INSERT AttendanceMark ON;"
+                + " INSERT INTO AttendanceMark (record_id, session_id, student_id, is_present)"
+                + " SELECT a.record_id, s.session_id, a.student_id, ISNULL(a.is_present, 0)"
+                + " FROM (SELECT *, ROW_NUMBER() OVER (PARTITION BY student_id, subject, date ORDER BY record_id DESC) AS rn FROM Attendance) a"
+                + " JOIN AttendanceSession s ON s.subject = a.subject AND s.date = a.date"
+                + " WHERE a.rn = 1 AND a.student_id IS NOT NULL;"
+                + " SET IDENTITY_INSERT AttendanceMark OFF",
+            // IDENTITY_INSERT only lifts the identity to the highest hot id; archived ids count too
+            RESEED_MARK_IDS,
+            "EXEC sp_rename 'dbo.Attendance', 'Attendance_legacy'",
+            "CREATE VIEW Attendance AS"
+                + " SELECT m.record_id, m.student_id, s.subject, s.date, m.is_present, m.row_ver"
+                + " FROM AttendanceMark m JOIN AttendanceSession s ON s.session_id = m.session_id"
+        },
+        // 6: int surrogate key for students. Marks reference Students.student_key instead of
+        //    the varchar id; the external id stays the primary key and the Attendance view
+        //    still exposes student_id. AttendanceArchive keeps ids (it is cold and compressed).
+        {
+            "ALTER TABLE Students ADD student_key int IDENTITY(1,1) NOT NULL",
+            "CREATE UNIQUE INDEX UQ_Students_student_key ON Students (student_key)",
+            "ALTER TABLE AttendanceMark ADD student_key int NULL",
+            "UPDATE m SET student_key = st.student_key FROM AttendanceMark m JOIN Students st ON st.id = m.student_id",
+            // The key and FK constraints from step 5 have generated names
+            "DECLARE @sql nvarchar(max) = N'';"
+                + " SELECT @sql += N'ALTER TABLE AttendanceMark DROP CONSTRAINT ' + QUOTENAME(name) + N';'"
+                + " FROM sys.objects WHERE parent_object_id = OBJECT_ID('dbo.AttendanceMark') AND type IN ('PK', 'F');"
+                + " EXEC sp_executesql @sql",
+            "DROP INDEX IX_AttendanceMark_student ON AttendanceMark",
+            "ALTER TABLE AttendanceMark DROP COLUMN student_id",
+            "ALTER TABLE AttendanceMark ALTER COLUMN student_key int NOT NULL",
+            "ALTER TABLE AttendanceMark ADD"
+                + " CONSTRAINT PK_AttendanceMark PRIMARY KEY (session_id, student_key),"
+                + " CONSTRAINT FK_AttendanceMark_session FOREIGN KEY (session_id) REFERENCES AttendanceSession (session_id),"
+                + " CONSTRAINT FK_AttendanceMark_student FOREIGN KEY (student_key) REFERENCES Students (student_key) ON DELETE CASCADE",
+            "CREATE INDEX IX_AttendanceMark_student ON AttendanceMark (student_key) INCLUDE (is_present)",
+            "ALTER VIEW Attendance AS"
+                + " SELECT m.record_id, st.id AS student_id, s.subject, s.date, m.is_present, m.row_ver"
+                + " FROM AttendanceMark m"
+                + " JOIN AttendanceSession s ON s.session_id = m.session_id"
+                + " JOIN Students st ON st.student_key = m.student_key"
+        },
+        // 7: Draft sessions written by autosave; only final sessions are visible through the view
+        {
+            "ALTER TABLE AttendanceSession ADD is_final bit NOT NULL CONSTRAINT DF_AttendanceSession_is_final DEFAULT 1",
+            "ALTER VIEW Attendance AS"
+                + " SELECT m.record_id, st.id AS student_id, s.subject, s.date, m.is_present, m.row_ver"
+                + " FROM AttendanceMark m"
+                + " JOIN AttendanceSession s ON s.session_id = m.session_id"
+                + " JOIN Students st ON st.student_key = m.student_key"
+                + " WHERE s.is_final = 1"
+        },
+        // 8: Tombstones for deleted hot marks (a cascading student delete, say) so delta
+        //    sync can take them back out. Rows moved by the archive are already counted in
+        //    AttendanceMonthlySummary and are left out.
+        {
+            "CREATE TABLE AttendanceMarkDeleted ("
+                + " record_id int NOT NULL PRIMARY KEY,"
+                + " subject varchar(50) NOT NULL,"
+                + " date date NOT NULL,"
+                + " row_ver rowversion NOT NULL)",
+            "CREATE INDEX IX_AttendanceMarkDeleted_subject_row_ver ON AttendanceMarkDeleted (subject, row_ver)",
+            "CREATE INDEX IX_AttendanceMarkDeleted_row_ver ON AttendanceMarkDeleted (row_ver)",
+            "CREATE TRIGGER TR_AttendanceMark_delete ON AttendanceMark AFTER DELETE AS"
+                + " SET NOCOUNT ON;"
+                + " INSERT INTO AttendanceMarkDeleted (record_id, subject, date)"
+                + " SELECT d.record_id, s.subject, s.date FROM deleted d"
+                + " JOIN AttendanceSession s ON s.session_id = d.session_id"
+                + " WHERE s.is_final = 1 AND NOT EXISTS (SELECT 1 FROM AttendanceArchive a WHERE a.record_id = d.record_id)"
+        },
+        // 9: Databases migrated by step 5 before it reseeded: new marks may already be
+        //    numbered below archived ones, so move the identity past them now
+        {
+            RESEED_MARK_IDS
+        },
+    };
+
+    private DatabaseSchema() {}
+
+    static void apply(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("IF OBJECT_ID('dbo.SchemaVersion', 'U') IS NULL "
+                    + "BEGIN CREATE TABLE SchemaVersion (version int NOT NULL); INSERT INTO SchemaVersion VALUES (0); END");
+        }
+
+        int current;
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MAX(version) FROM SchemaVersion")) {
+            current = rs.next() ? rs.getInt(1) : 0;
+        }
+
+        for (int version = current + 1; version <= STEPS.length; version++) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                // Re-check under lock so two clients starting together don't both migrate
+                try (ResultSet rs = stmt.executeQuery("SELECT MAX(version) FROM SchemaVersion WITH (UPDLOCK, HOLDLOCK)")) {
+                    if (rs.next() && rs.getInt(1) >= version) {
+                        conn.commit();
+                        continue;
+                    }
+                }
+                for (String sql : STEPS[version - 1]) {
+                    stmt.execute(sql);
+                }
+                stmt.executeUpdate("UPDATE SchemaVersion SET version = " + version);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+    }
+}
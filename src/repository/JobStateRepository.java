@@ -0,0 +1,75 @@
+package repository;
+
+import java.sql.*;
+import java.time.LocalDateTime;
+
+// Persistent state for background jobs (see JobState in DatabaseSchema):
+// when a job last ran and how far through the change stream it has got.
+// Each shard has its own JobState; these methods use the shard in scope
+// (DatabaseConnection.onShard), or the default one.
+public class JobStateRepository {
+
+    public LocalDateTime getLastRun(String jobName) {
+        String sql = "SELECT last_run FROM JobState WHERE job_name = ?";
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            stmt.setString(1, jobName);
+            ResultSet rs = stmt.executeQuery();
+            if (rs.next() && rs.getTimestamp(1) != null) {
+                return rs.getTimestamp(1).toLocalDateTime();
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    // Marks the run for 'slot' as taken. Returns false if this or another
+    // client has already run the job at or after that slot.
+    public boolean claimRun(String jobName, LocalDateTime slot) {
+        String sql = "UPDATE JobState SET last_run = ? WHERE job_name = ? AND (last_run IS NULL OR last_run < ?)";
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            stmt.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
+            stmt.setString(2, jobName);
+            stmt.setTimestamp(3, Timestamp.valueOf(slot));
+            return stmt.executeUpdate() > 0;
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    // -1 if it could not be read
+    public long getWatermark(String jobName) {
+        String sql = "SELECT watermark FROM JobState WHERE job_name = ?";
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            stmt.setString(1, jobName);
+            ResultSet rs = stmt.executeQuery();
+            if (rs.next()) return rs.getLong(1);
+            return 0;
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return -1;
+    }
+
+    // Only ever moves forward, so a slow client can't roll back a faster one
+    public void advanceWatermark(String jobName, long watermark) {
+        String sql = "UPDATE JobState SET watermark = ? WHERE job_name = ? AND watermark < ?";
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            stmt.setLong(1, watermark);
+            stmt.setString(2, jobName);
+            stmt.setLong(3, watermark);
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+}
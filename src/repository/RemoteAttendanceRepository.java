@@ -0,0 +1,207 @@
+package repository;
+
+import model.AttendanceChanges;
+import model.AttendanceColumns;
+import model.AttendanceRecord;
+import model.AttendanceRecordCodec;
+import model.AttendanceRollup;
+import model.StringDictionary;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.Consumer;
+
+// AttendanceRepository of the thin client: the calls the teacher screens make go to
+// AttendanceApiServer instead of the database. Save listeners are still told about
+// saved marks, so alerts and the range index keep working. Owner-only calls (archive,
+// rollup maintenance, rankings) have no endpoint and still use the inherited direct
+// database path, so the owner dashboard needs database access as before.
+public class RemoteAttendanceRepository extends AttendanceRepository {
+
+    private static final StringDictionary studentCodes = new StringDictionary();
+    private static final StringDictionary subjectCodes = new StringDictionary();
+
+    @Override
+    public int addRecords(String subject, LocalDate date, List<AttendanceRecord> records) {
+        if (records.isEmpty()) return 0;
+        int rows;
+        try {
+            rows = ApiClient.post("/api/marks", out -> ApiClient.writeRecords(out, records),
+                    "subject", subject, "date", date).readInt();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return -1;
+        }
+        // The server only says how many were written; when some were skipped
+        // (already marked) we can't tell which, so listeners aren't told
+        if (rows == records.size()) fireSaved(records);
+        return rows;
+    }
+
+    @Override
+    public int openDraftSession(String subject, LocalDate date) {
+        try {
+            return ApiClient.post("/api/draft", null, "subject", subject, "date", date).readInt();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return -1;
+    }
+
+    @Override
+    public Map<String, Boolean> getSessionMarks(String subject, int sessionId) {
+        try {
+            return ApiClient.readMarks(ApiClient.get("/api/draft/marks", "subject", subject, "session", sessionId));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return new LinkedHashMap<>();
+    }
+
+    @Override
+    public boolean saveDraftMarks(String subject, int sessionId, Map<String, Boolean> marks) {
+        try {
+            return ApiClient.post("/api/draft/marks", out -> ApiClient.writeMarks(out, marks),
+                    "subject", subject, "session", sessionId).readBoolean();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    @Override
+    public boolean finalizeSession(String subject, LocalDate date, int sessionId) {
+        Map<String, Boolean> marks;
+        try {
+            // Read the marks first: the server forgets the draft once it is final
+            marks = getSessionMarks(subject, sessionId);
+            if (!ApiClient.post("/api/draft/finalize", null, "subject", subject, "date", date, "session", sessionId).readBoolean()) {
+                return false;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        List<AttendanceRecord> saved = new ArrayList<>();
+        for (Map.Entry<String, Boolean> e : marks.entrySet()) {
+            saved.add(new AttendanceRecord(e.getKey(), subject, date, e.getValue()));
+        }
+        fireSaved(saved);
+        return true;
+    }
+
+    @Override
+    public boolean isMarked(String subject, LocalDate date) {
+        try {
+            return ApiClient.get("/api/marked", "subject", subject, "date", date).readBoolean();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    @Override
+    public List<AttendanceRecord> getRecordsByDateRange(String subject, LocalDate fromDate, LocalDate toDate) {
+        try {
+            return ApiClient.readRecords(ApiClient.get("/api/records",
+                    "subject", subject, "from", fromDate, "to", toDate, "order", "date"));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return new ArrayList<>();
+    }
+
+    // Fetched in one response, then handed to the consumer
+    @Override
+    public void streamRecordsByDateRange(String subject, LocalDate fromDate, LocalDate toDate, Consumer<AttendanceRecord> consumer) {
+        try {
+            List<AttendanceRecord> records = ApiClient.readRecords(ApiClient.get("/api/records",
+                    "subject", subject, "from", fromDate, "to", toDate));
+            records.forEach(consumer);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public AttendanceColumns getColumnsByDateRange(String subject, LocalDate fromDate, LocalDate toDate, boolean dateOrder) {
+        AttendanceColumns cols = new AttendanceColumns(studentCodes, subjectCodes);
+        try {
+            List<AttendanceRecord> records = ApiClient.readRecords(ApiClient.get("/api/records",
+                    "subject", subject, "from", fromDate, "to", toDate, "order", dateOrder ? "date" : null));
+            for (AttendanceRecord r : records) {
+                cols.add(r.getStudentId(), r.getSubject(), (int) r.getDate().toEpochDay(), r.isPresent());
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return cols;
+    }
+
+    @Override
+    public long[] getAttendanceCounts(String studentId, String subject) {
+        try {
+            DataInputStream in = ApiClient.get("/api/counts", "subject", subject, "student", studentId);
+            return new long[]{in.readLong(), in.readLong()};
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return new long[]{0, 0};
+    }
+
+    @Override
+    public AttendanceChanges getChangesSince(String subject, long afterRowVersion) {
+        List<AttendanceRecord> list = new ArrayList<>();
+        List<Integer> deleted = new ArrayList<>();
+        try {
+            DataInputStream in = ApiClient.get("/api/changes", "subject", subject, "afterVer", afterRowVersion);
+            long upTo = in.readLong();
+            int n = AttendanceRecordCodec.readVarInt(in);
+            for (int i = 0; i < n; i++) {
+                int recordId = in.readInt();
+                long rowVersion = in.readLong();
+                String studentId = in.readUTF();
+                LocalDate date = LocalDate.ofEpochDay(in.readInt());
+                list.add(new AttendanceRecord(recordId, rowVersion, studentId, subject, date, in.readBoolean()));
+            }
+            int d = AttendanceRecordCodec.readVarInt(in);
+            for (int i = 0; i < d; i++) deleted.add(in.readInt());
+            return new AttendanceChanges(list, deleted, upTo);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return new AttendanceChanges(new ArrayList<>(), new ArrayList<>(), afterRowVersion);
+    }
+
+    @Override
+    public Map<String, long[]> getArchivedCounts(String subject) {
+        Map<String, long[]> counts = new HashMap<>();
+        try {
+            DataInputStream in = ApiClient.get("/api/archived-counts", "subject", subject);
+            int n = AttendanceRecordCodec.readVarInt(in);
+            for (int i = 0; i < n; i++) {
+                counts.put(in.readUTF(), new long[]{in.readLong(), in.readLong()});
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return counts;
+    }
+
+    @Override
+    public List<AttendanceRollup> getRollups(String subject, char periodType, LocalDate from, LocalDate to) {
+        List<AttendanceRollup> list = new ArrayList<>();
+        try {
+            DataInputStream in = ApiClient.get("/api/rollups", "subject", subject, "type", periodType, "from", from, "to", to);
+            int n = AttendanceRecordCodec.readVarInt(in);
+            for (int i = 0; i < n; i++) {
+                list.add(new AttendanceRollup(in.readUTF(), periodType, LocalDate.ofEpochDay(in.readInt()), in.readInt(), in.readInt()));
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return list;
+    }
+}
@@ -0,0 +1,81 @@
+package repository;
+
+import model.AttendanceRecordCodec;
+import model.Student;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+// StudentRepository of the thin client: roster reads come from AttendanceApiServer,
+// whose roster cache is shared by every client. A teacher's session only sees their
+// own subject's students. Adding, editing and deleting students is owner work; it goes
+// through the server too, so the shared cache is cleared and every client sees the change.
+public class RemoteStudentRepository extends StudentRepository {
+
+    @Override
+    public List<Student> getAll() {
+        List<Student> list = new ArrayList<>();
+        try {
+            DataInputStream in = ApiClient.get("/api/roster");
+            int n = AttendanceRecordCodec.readVarInt(in);
+            for (int i = 0; i < n; i++) {
+                list.add(new Student(in.readUTF(), in.readUTF(), in.readUTF()));
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return list;
+    }
+
+    @Override
+    public Optional<Student> findById(String id) {
+        return getAll().stream().filter(s -> s.getId().equals(id)).findFirst();
+    }
+
+    @Override
+    public void addStudent(Student s) {
+        addStudents(List.of(s));
+    }
+
+    @Override
+    public int addStudents(List<Student> students) {
+        try {
+            return ApiClient.post("/api/students", out -> {
+                AttendanceRecordCodec.writeVarInt(out, students.size());
+                for (Student s : students) {
+                    out.writeUTF(s.getId());
+                    out.writeUTF(s.getName());
+                    out.writeUTF(s.getSubject());
+                }
+            }).readInt();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return 0;
+    }
+
+    @Override
+    public boolean editStudent(String oldId, Student newStudent) {
+        try {
+            return ApiClient.post("/api/students/edit", out -> {
+                out.writeUTF(newStudent.getName());
+                out.writeUTF(newStudent.getSubject());
+            }, "id", oldId).readBoolean();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    @Override
+    public void deleteStudent(String id) {
+        try {
+            ApiClient.post("/api/students/delete", null, "id", id);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package repository;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Counters for one connection route (a shard's primary or replica pool):
+// how many connections were handed out and how long callers held them.
+// For primaries it also counts reads that wanted the replica but were sent
+// to the primary, split by reason.
+public class RouteMetrics {
+
+    private final String route;
+    private final LongAdder checkouts = new LongAdder();
+    private final LongAdder heldNanos = new LongAdder();
+    private final AtomicLong maxHeldNanos = new AtomicLong();
+    private final LongAdder errors = new LongAdder();
+
+    // Reads sent to the primary instead of the replica
+    final LongAdder fallbackRecentWrite = new LongAdder();
+    final LongAdder fallbackStale = new LongAdder();
+    final LongAdder fallbackUnavailable = new LongAdder();
+
+    RouteMetrics(String route) {
+        this.route = route;
+    }
+
+    void recordCheckout() {
+        checkouts.increment();
+    }
+
+    void recordRelease(long nanosHeld) {
+        heldNanos.add(nanosHeld);
+        maxHeldNanos.accumulateAndGet(nanosHeld, Math::max);
+    }
+
+    void recordError() {
+        errors.increment();
+    }
+
+    public String getRoute() { return route; }
+    public long getCheckouts() { return checkouts.sum(); }
+    public long getErrors() { return errors.sum(); }
+    public long getFallbackRecentWrite() { return fallbackRecentWrite.sum(); }
+    public long getFallbackStale() { return fallbackStale.sum(); }
+    public long getFallbackUnavailable() { return fallbackUnavailable.sum(); }
+
+    public double getAverageHeldMs() {
+        long n = checkouts.sum();
+        return n == 0 ? 0.0 : heldNanos.sum() / 1_000_000.0 / n;
+    }
+
+    public double getMaxHeldMs() {
+        return maxHeldNanos.get() / 1_000_000.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%-20s checkouts=%d avgHeld=%.1fms maxHeld=%.1fms errors=%d fallback(recentWrite=%d stale=%d unavailable=%d)",
+                route, getCheckouts(), getAverageHeldMs(), getMaxHeldMs(), getErrors(),
+                getFallbackRecentWrite(), getFallbackStale(), getFallbackUnavailable());
+    }
+}
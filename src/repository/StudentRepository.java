@@ -1,32 +1,168 @@
 package repository;
 
+import model.AuditEntry;
 import model.Student;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class StudentRepository {
 
+    // --- NEW: Roster cache (shared by all instances, cleared on every write) ---
+    // Writes made by another client (or PC) don't clear it, so it also expires after
+    // ROSTER_TTL_MS; that bounds how long a student added elsewhere goes unseen.
+    private static final long ROSTER_TTL_MS = 30_000;
+    
+    private static final class CachedRoster {
+        final List<Student> students;
+        final long expiresAt;
+        
+        CachedRoster(List<Student> students) {
+            this.students = students;
+            this.expiresAt = System.currentTimeMillis() + ROSTER_TTL_MS;
+        }
+    }
+    
+    private static volatile CachedRoster rosterCache;
+    private static final java.util.concurrent.atomic.AtomicLong rosterVersion = new java.util.concurrent.atomic.AtomicLong();
+
     public List<Student> getAll(){
+        CachedRoster cached = rosterCache;
+        if (cached != null && cached.expiresAt > System.currentTimeMillis()) return new ArrayList<>(cached.students);
+        
+        long version = rosterVersion.get();
+        List<Student> list = new ArrayList<>();
+        boolean complete = true;
+        for (List<Student> shard : DatabaseConnection.scatter(this::loadRoster)) { // Every shard in parallel
+            if (shard == null) complete = false; else list.addAll(shard);
+        }
+        // Only publish if every shard answered and no write happened while we were reading
+        if (complete && rosterVersion.get() == version) {
+            rosterCache = new CachedRoster(Collections.unmodifiableList(new ArrayList<>(list)));
+        }
+        return list;
+    }
+    
+    // Students on the current shard, or null if the query failed
+    private List<Student> loadRoster() {
         List<Student> list = new ArrayList<>();
         String sql = "SELECT * FROM Students";
-        try (Connection conn = DatabaseConnection.getConnection();
+        try (Connection conn = DatabaseConnection.getReadConnection();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
             
+            String shard = DatabaseConnection.shardOf(conn);
             while (rs.next()) {
                 list.add(new Student(
                     rs.getString("id"),
                     rs.getString("name"),
                     rs.getString("subject")
                 ));
+                rememberKey(shard, rs.getString("id"), rs.getInt("student_key"));
             }
+            loadedShards.add(shard);
+            return list;
         } catch (SQLException e) {
             e.printStackTrace();
         }
-        return list;
+        return null;
+    }
+    
+    // Drops the cached roster so the next getAll() reads from the database
+    public static void invalidateRoster() {
+        rosterVersion.incrementAndGet();
+        rosterCache = null;
     }
     
+    // --- NEW: External id <-> internal student_key map ---
+    // Attendance marks reference students by a 4-byte student_key. Keys are IDENTITY
+    // values assigned per shard, so the same key (and, for an id that isn't on a shard,
+    // no key at all) means different things on different shards: both directions are
+    // kept per shard. A shard's maps are filled in one query the first time they are
+    // needed (or by a roster load) and then only misses go to the database.
+    // Keys never change for an id; only deleting the student retires them.
+    private static final ConcurrentHashMap<String, ConcurrentHashMap<String, Integer>> keyById = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, ConcurrentHashMap<Integer, String>> idByKey = new ConcurrentHashMap<>();
+    private static final Set<String> loadedShards = ConcurrentHashMap.newKeySet();
+
+    // Key of the student on conn's shard, or -1 if there is no such student
+    static int keyOf(Connection conn, String id) throws SQLException {
+        String shard = DatabaseConnection.shardOf(conn);
+        Integer key = forShard(keyById, shard).get(id);
+        if (key == null && loadKeys(conn)) key = forShard(keyById, shard).get(id);
+        if (key == null) {
+            try (PreparedStatement stmt = conn.prepareStatement("SELECT student_key FROM Students WHERE id = ?")) {
+                stmt.setString(1, id);
+                ResultSet rs = stmt.executeQuery();
+                if (!rs.next()) return -1;
+                key = rs.getInt(1);
+                rememberKey(shard, id, key);
+            }
+        }
+        return key;
+    }
+
+    // Id of the student with this key on conn's shard, or null if there is none
+    static String idOf(Connection conn, int key) throws SQLException {
+        String shard = DatabaseConnection.shardOf(conn);
+        String id = forShard(idByKey, shard).get(key);
+        if (id == null && loadKeys(conn)) id = forShard(idByKey, shard).get(key);
+        if (id == null) {
+            try (PreparedStatement stmt = conn.prepareStatement("SELECT id FROM Students WHERE student_key = ?")) {
+                stmt.setInt(1, key);
+                ResultSet rs = stmt.executeQuery();
+                if (!rs.next()) return null;
+                id = rs.getString(1);
+                rememberKey(shard, id, key);
+            }
+        }
+        return id;
+    }
+
+    // Drops every known key, e.g. after a write failed on a key another client retired
+    static void clearKeys() {
+        loadedShards.clear();
+        keyById.clear();
+        idByKey.clear();
+    }
+
+    // Loads the whole shard's map unless it was loaded before; true if it did
+    private static boolean loadKeys(Connection conn) throws SQLException {
+        String shard = DatabaseConnection.shardOf(conn);
+        if (loadedShards.contains(shard)) return false;
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT id, student_key FROM Students")) {
+            while (rs.next()) rememberKey(shard, rs.getString(1), rs.getInt(2));
+        }
+        loadedShards.add(shard);
+        return true;
+    }
+
+    private static <K, V> Map<K, V> forShard(ConcurrentHashMap<String, ConcurrentHashMap<K, V>> maps, String shard) {
+        return maps.computeIfAbsent(shard, k -> new ConcurrentHashMap<>());
+    }
+
+    private static void rememberKey(String shard, String id, int key) {
+        forShard(keyById, shard).put(id, key);
+        forShard(idByKey, shard).put(key, id);
+    }
+
+    private static void forgetKey(String id) {
+        for (Map.Entry<String, ConcurrentHashMap<String, Integer>> e : keyById.entrySet()) {
+            Integer key = e.getValue().remove(id);
+            if (key != null) forShard(idByKey, e.getKey()).remove(key, id);
+        }
+    }
+    
+    // Ids are unique across shards, so at most one shard has a match
     public Optional<Student> findById(String id) {
+        for (Optional<Student> s : DatabaseConnection.scatter(() -> findOnShard(id))) {
+            if (s.isPresent()) return s;
+        }
+        return Optional.empty();
+    }
+    
+    private Optional<Student> findOnShard(String id) {
         String sql = "SELECT * FROM Students WHERE id = ?";
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
@@ -48,44 +184,119 @@ public class StudentRepository {
     
     public void addStudent(Student s) {
         String sql = "INSERT INTO Students (id, name, subject) VALUES (?, ?, ?)";
-        try (Connection conn = DatabaseConnection.getConnection();
+        try (Connection conn = DatabaseConnection.getConnection(s.getSubject());
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setString(1, s.getId());
             stmt.setString(2, s.getName());
             stmt.setString(3, s.getSubject());
             stmt.executeUpdate();
+            invalidateRoster();
+            AuditJournal.record(AuditEntry.Operation.STUDENT_ADD, s.getSubject(), s.getId(), s.getName());
             
         } catch (SQLException e) {
             e.printStackTrace();
         }
     }
     
+    // --- NEW: Batched insert for bulk imports (one round trip per batch and shard) ---
+    public int addStudents(List<Student> students) {
+        Map<String, List<Student>> byShard = new LinkedHashMap<>();
+        for (Student s : students) {
+            byShard.computeIfAbsent(DatabaseConnection.shardFor(s.getSubject()), k -> new ArrayList<>()).add(s);
+        }
+        int added = 0;
+        for (Map.Entry<String, List<Student>> e : byShard.entrySet()) {
+            added += DatabaseConnection.onShard(e.getKey(), () -> insertBatch(e.getValue()));
+        }
+        return added;
+    }
+    
+    private int insertBatch(List<Student> students) {
+        String sql = "INSERT INTO Students (id, name, subject) VALUES (?, ?, ?)";
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            conn.setAutoCommit(false);
+            for (Student s : students) {
+                stmt.setString(1, s.getId());
+                stmt.setString(2, s.getName());
+                stmt.setString(3, s.getSubject());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+            conn.commit();
+            invalidateRoster();
+            for (Student s : students) {
+                AuditJournal.record(AuditEntry.Operation.STUDENT_ADD, s.getSubject(), s.getId(), s.getName());
+            }
+            return students.size();
+            
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return 0;
+    }
+    
     public void deleteStudent(String id) {
-        String sql = "DELETE FROM Students WHERE id = ?";
+        boolean deleted = DatabaseConnection.scatter(() -> deleteOnShard(id)).contains(Boolean.TRUE);
+        forgetKey(id);
+        invalidateRoster();
+        // Only journal a delete that happened (a failed shard has already printed its error)
+        if (deleted) AuditJournal.record(AuditEntry.Operation.STUDENT_DELETE, null, id, null);
+    }
+    
+    // True if the student was on this shard and is gone now
+    private Boolean deleteOnShard(String id) {
+        // Hot attendance rows go through ON DELETE CASCADE; archived rows have no FK
+        String sql = "DELETE FROM AttendanceArchive WHERE student_id = ?;"
+                + " DELETE FROM AttendanceMonthlySummary WHERE student_id = ?;"
+                + " DELETE FROM Students WHERE id = ?";
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setString(1, id);
-            stmt.executeUpdate();
+            stmt.setString(2, id);
+            stmt.setString(3, id);
+            // The last update count is the Students delete
+            boolean isResult = stmt.execute();
+            int students = 0;
+            while (isResult || stmt.getUpdateCount() != -1) {
+                if (!isResult) students = stmt.getUpdateCount();
+                isResult = stmt.getMoreResults();
+            }
+            return students > 0;
             
         } catch (SQLException e) {
             e.printStackTrace();
         }
+        return false;
     }
 
-    public void editStudent(String oldId, Student newStudent) {
+    // Returns false (and changes nothing) if the student is gone, or if the new subject lives
+    // on another shard: the student's attendance history can't follow them there
+    public boolean editStudent(String oldId, Student newStudent) {
+        Optional<Student> old = findById(oldId);
+        if (!old.isPresent()) return false;
+        String shard = DatabaseConnection.shardFor(old.get().getSubject());
+        if (!shard.equals(DatabaseConnection.shardFor(newStudent.getSubject()))) return false;
+        
         String sql = "UPDATE Students SET name=?, subject=? WHERE id=?";
-        try (Connection conn = DatabaseConnection.getConnection();
+        try (Connection conn = DatabaseConnection.getConnection(old.get().getSubject());
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setString(1, newStudent.getName());
             stmt.setString(2, newStudent.getSubject());
             stmt.setString(3, oldId);
-            stmt.executeUpdate();
+            int rows = stmt.executeUpdate();
+            invalidateRoster();
+            if (rows == 0) return false; // Deleted by someone else since it was loaded
+            AuditJournal.record(AuditEntry.Operation.STUDENT_EDIT, newStudent.getSubject(), oldId, newStudent.getName());
+            return true;
             
         } catch (SQLException e) {
             e.printStackTrace();
         }
+        return false;
     }
 }
\ No newline at end of file
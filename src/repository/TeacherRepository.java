@@ -1,5 +1,6 @@
 package repository;
 
+import model.AuditEntry;
 import model.Teacher;
 import java.sql.*;
 import java.util.*;
@@ -10,8 +11,67 @@ public class TeacherRepository {
         // No setup needed, directly connects to DB
     }
     
+    // --- NEW: Login lookup cache (shared by all instances, cleared on every write) ---
+    // Found teachers are kept for a short while and unknown usernames for a shorter
+    // one, so repeated attempts with the same (or a mistyped) name don't each cost
+    // a query. The TTLs bound how long a change made from another client goes unseen.
+    private static final long FOUND_TTL_MS = 30_000;
+    private static final long NOT_FOUND_TTL_MS = 10_000;
+    private static final int MAX_CACHED_LOOKUPS = 1_000;
+    
+    private static final class CachedLookup {
+        final Optional<Teacher> teacher;
+        final long expiresAt;
+        
+        CachedLookup(Optional<Teacher> teacher, long ttl) {
+            this.teacher = teacher;
+            this.expiresAt = System.currentTimeMillis() + ttl;
+        }
+    }
+    
+    private static final java.util.concurrent.ConcurrentHashMap<String, CachedLookup> lookupCache = new java.util.concurrent.ConcurrentHashMap<>();
+    private static final java.util.concurrent.atomic.AtomicLong teacherVersion = new java.util.concurrent.atomic.AtomicLong();
+    
     // Find teacher by username (for Login)
     public Optional<Teacher> find(String username){
+        if (username == null) return Optional.empty();
+        String key = username.trim().toLowerCase(); // Usernames compare case-insensitively in the database
+        CachedLookup cached = lookupCache.get(key);
+        if (cached != null && cached.expiresAt > System.currentTimeMillis()) return cached.teacher;
+        
+        long version = teacherVersion.get();
+        Optional<Teacher> t = Optional.empty();
+        boolean complete = true;
+        for (Optional<Teacher> found : DatabaseConnection.scatter(() -> loadOnShard(username))) { // Every shard in parallel
+            if (found == null) complete = false; else if (found.isPresent()) t = found;
+        }
+        // A failed shard may hold the name, so "not found" is only cached when all answered
+        if (t.isPresent() || complete) {
+            if (lookupCache.size() >= MAX_CACHED_LOOKUPS) evictLookups(); // Junk names can't grow it without bound
+            // Only publish if no write happened while we were reading
+            if (teacherVersion.get() == version) {
+                lookupCache.put(key, new CachedLookup(t, t.isPresent() ? FOUND_TTL_MS : NOT_FOUND_TTL_MS));
+            }
+        }
+        return t;
+    }
+    
+    // Drops expired entries, then the ones closest to expiry (unknown names go first)
+    private static synchronized void evictLookups() {
+        if (lookupCache.size() < MAX_CACHED_LOOKUPS) return; // Another thread just did it
+        long now = System.currentTimeMillis();
+        lookupCache.values().removeIf(c -> c.expiresAt <= now);
+        int excess = lookupCache.size() - MAX_CACHED_LOOKUPS * 3 / 4;
+        if (excess <= 0) return;
+        List<Map.Entry<String, CachedLookup>> entries = new ArrayList<>(lookupCache.entrySet());
+        entries.sort(Comparator.comparingLong(e -> e.getValue().expiresAt));
+        for (int i = 0; i < excess; i++) {
+            lookupCache.remove(entries.get(i).getKey(), entries.get(i).getValue());
+        }
+    }
+    
+    // Lookup on the current shard; null if the query failed
+    private Optional<Teacher> loadOnShard(String username) {
         String sql = "SELECT * FROM Teachers WHERE username = ?";
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
@@ -27,16 +87,31 @@ public class TeacherRepository {
                 );
                 return Optional.of(t);
             }
+            return Optional.empty();
         } catch (SQLException e) {
-            e.printStackTrace();
+            e.printStackTrace(); // Not cached, the next attempt retries
         }
-        return Optional.empty();
+        return null;
+    }
+    
+    // Drops every cached lookup so the next find() reads from the database
+    public static void invalidateLookups() {
+        teacherVersion.incrementAndGet();
+        lookupCache.clear();
     }
     
     public List<Teacher> getAllTeachers() {
+        List<Teacher> list = new ArrayList<>();
+        for (List<Teacher> shard : DatabaseConnection.scatter(this::loadAllOnShard)) {
+            list.addAll(shard);
+        }
+        return list;
+    }
+    
+    private List<Teacher> loadAllOnShard() {
         List<Teacher> list = new ArrayList<>();
         String sql = "SELECT * FROM Teachers";
-        try (Connection conn = DatabaseConnection.getConnection();
+        try (Connection conn = DatabaseConnection.getReadConnection();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
             
@@ -54,42 +129,76 @@ public class TeacherRepository {
     }
     
     public void addTeacher(Teacher t) {
+        if (insertTeacher(t)) AuditJournal.record(AuditEntry.Operation.TEACHER_ADD, t.getSubject(), t.getUsername(), null);
+    }
+    
+    private boolean insertTeacher(Teacher t) {
         String sql = "INSERT INTO Teachers (username, password, subject) VALUES (?, ?, ?)";
-        try (Connection conn = DatabaseConnection.getConnection();
+        try (Connection conn = DatabaseConnection.getConnection(t.getSubject());
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setString(1, t.getUsername());
             stmt.setString(2, t.getPassword());
             stmt.setString(3, t.getSubject());
             stmt.executeUpdate();
+            invalidateLookups();
+            return true;
             
         } catch (SQLException e) {
             e.printStackTrace();
         }
+        return false;
     }
     
     public void deleteTeacher(String username) {
+        boolean deleted = DatabaseConnection.scatter(() -> deleteOnShard(username)).contains(Boolean.TRUE);
+        invalidateLookups();
+        // Only journal a delete that happened (a failed shard has already printed its error)
+        if (deleted) AuditJournal.record(AuditEntry.Operation.TEACHER_DELETE, null, username, null);
+    }
+    
+    // True if the teacher was on this shard and is gone now
+    private Boolean deleteOnShard(String username) {
         String sql = "DELETE FROM Teachers WHERE username = ?";
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setString(1, username);
-            stmt.executeUpdate();
+            return stmt.executeUpdate() > 0;
             
         } catch (SQLException e) {
             e.printStackTrace();
         }
+        return false;
     }
 
     public void editTeacher(String oldUsername, Teacher newTeacherData) {
+        Teacher old = null;
+        for (Optional<Teacher> found : DatabaseConnection.scatter(() -> loadOnShard(oldUsername))) {
+            if (found != null && found.isPresent()) old = found.get();
+        }
+        if (old == null) return;
+        if (!DatabaseConnection.shardFor(old.getSubject()).equals(DatabaseConnection.shardFor(newTeacherData.getSubject()))) {
+            // New subject lives on another shard: the teacher row moves with it
+            if (!insertTeacher(new Teacher(oldUsername, newTeacherData.getPassword(), newTeacherData.getSubject()))) return;
+            String from = DatabaseConnection.shardFor(old.getSubject());
+            DatabaseConnection.onShard(from, () -> deleteOnShard(oldUsername));
+            invalidateLookups();
+            AuditJournal.record(AuditEntry.Operation.TEACHER_EDIT, newTeacherData.getSubject(), oldUsername, "moved from " + from);
+            return;
+        }
+        
         String sql = "UPDATE Teachers SET password=?, subject=? WHERE username=?";
-        try (Connection conn = DatabaseConnection.getConnection();
+        try (Connection conn = DatabaseConnection.getConnection(old.getSubject());
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setString(1, newTeacherData.getPassword());
             stmt.setString(2, newTeacherData.getSubject());
             stmt.setString(3, oldUsername);
-            stmt.executeUpdate();
+            int rows = stmt.executeUpdate();
+            invalidateLookups();
+            // Deleted by someone else since it was loaded: nothing was edited
+            if (rows > 0) AuditJournal.record(AuditEntry.Operation.TEACHER_EDIT, newTeacherData.getSubject(), oldUsername, null);
             
         } catch (SQLException e) {
             e.printStackTrace();
@@ -0,0 +1,160 @@
+package service;
+
+import model.AttendanceAlert;
+import model.AttendanceRecord;
+import repository.AttendanceRepository;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+// Raises an alert when a student's attendance crosses the threshold (default 75%,
+// -Dattendance.alert.threshold=N), checked as each batch of marks is saved.
+// The repository reads each saved student's {present, total} inside the saving
+// transaction and hands it over with the batch, so every batch is judged against
+// the counts it actually produced: nothing is cached that a failed read or a
+// concurrent save could leave wrong. Without those counts (thin clients) they are
+// read back once per student and batch.
+// Crossings go to the in-app list and are appended to attendance_alerts.log.
+public class AttendanceAlertService {
+
+    private static final double DEFAULT_THRESHOLD = 75.0;
+    private static final String LOG_FILE = "attendance_alerts.log";
+    private static final int MAX_RECENT = 500;
+
+    private final AttendanceRepository attendanceRepo;
+    private final double threshold;
+    private final Path logFile;
+
+    private final BiConsumer<List<AttendanceRecord>, Map<String, long[]>> saveListener = this::onSaved;
+    private final Deque<AttendanceAlert> recent = new ArrayDeque<>(); // Newest first
+    private final List<Consumer<AttendanceAlert>> alertListeners = new CopyOnWriteArrayList<>();
+
+    public AttendanceAlertService(AttendanceRepository attendanceRepo) {
+        this(attendanceRepo, Double.parseDouble(System.getProperty("attendance.alert.threshold", String.valueOf(DEFAULT_THRESHOLD))),
+                Paths.get(LOG_FILE));
+    }
+
+    public AttendanceAlertService(AttendanceRepository attendanceRepo, double threshold, Path logFile) {
+        this.attendanceRepo = attendanceRepo;
+        this.threshold = threshold;
+        this.logFile = logFile;
+    }
+
+    public void start() {
+        attendanceRepo.addCountedSaveListener(saveListener);
+    }
+
+    public void stop() {
+        attendanceRepo.removeCountedSaveListener(saveListener);
+    }
+
+    public double getThreshold() {
+        return threshold;
+    }
+
+    // Called on the thread that raised the alert
+    public void addAlertListener(Consumer<AttendanceAlert> listener) {
+        alertListeners.add(listener);
+    }
+
+    public void removeAlertListener(Consumer<AttendanceAlert> listener) {
+        alertListeners.remove(listener);
+    }
+
+    // Recent alerts for one subject (null for all), newest first
+    public synchronized List<AttendanceAlert> getAlerts(String subject) {
+        List<AttendanceAlert> list = new ArrayList<>();
+        for (AttendanceAlert a : recent) {
+            if (subject == null || a.getSubject().equalsIgnoreCase(subject)) list.add(a);
+        }
+        return list;
+    }
+
+    void onSaved(List<AttendanceRecord> saved, Map<String, long[]> countsAfter) {
+        // {present, total} of this batch's marks per student and subject
+        Map<String, long[]> inBatch = new LinkedHashMap<>();
+        for (AttendanceRecord r : saved) {
+            long[] c = inBatch.computeIfAbsent(keyOf(r), k -> new long[2]);
+            if (r.isPresent()) c[0]++;
+            c[1]++;
+        }
+
+        // Counts from before the batch: the counts after it, less its own marks
+        Map<String, long[]> running = new HashMap<>();
+        for (AttendanceRecord r : saved) {
+            String key = keyOf(r);
+            if (running.containsKey(key)) continue;
+            long[] after = countsAfter != null ? countsAfter.get(r.getStudentId())
+                    : attendanceRepo.getAttendanceCounts(r.getStudentId(), r.getSubject());
+            long[] batch = inBatch.get(key);
+            // Fewer marks than the batch itself: the read failed or missed the save, so skip the pair
+            if (after == null || after[0] < batch[0] || after[1] < batch[1]) continue;
+            running.put(key, new long[]{after[0] - batch[0], after[1] - batch[1]});
+        }
+
+        List<AttendanceAlert> raised = new ArrayList<>();
+        for (AttendanceRecord r : saved) {
+            long[] c = running.get(keyOf(r));
+            if (c == null) continue;
+            AttendanceAlert alert = apply(c, r);
+            if (alert != null) raised.add(alert);
+        }
+        if (raised.isEmpty()) return;
+        synchronized (this) {
+            for (AttendanceAlert a : raised) {
+                recent.addFirst(a);
+                if (recent.size() > MAX_RECENT) recent.removeLast();
+            }
+        }
+        writeLog(raised);
+        for (AttendanceAlert a : raised) {
+            for (Consumer<AttendanceAlert> l : alertListeners) {
+                l.accept(a);
+            }
+        }
+    }
+
+    private static String keyOf(AttendanceRecord r) {
+        return r.getStudentId() + '\0' + r.getSubject();
+    }
+
+    private AttendanceAlert apply(long[] c, AttendanceRecord r) {
+        boolean wasBelow = c[1] > 0 && percentage(c) < threshold;
+        if (r.isPresent()) c[0]++;
+        c[1]++;
+        boolean isBelow = percentage(c) < threshold;
+
+        if (wasBelow == isBelow) return null;
+        // A student's first mark being an absence counts as falling below
+        return new AttendanceAlert(LocalDateTime.now(), isBelow ? AttendanceAlert.FELL_BELOW : AttendanceAlert.RECOVERED,
+                r.getStudentId(), r.getSubject(), r.getDate(), percentage(c), threshold);
+    }
+
+    private static double percentage(long[] c) {
+        return c[1] == 0 ? 0.0 : (double) c[0] / c[1] * 100.0;
+    }
+
+    // Tab-separated, one line per crossing
+    private synchronized void writeLog(List<AttendanceAlert> alerts) {
+        try (BufferedWriter writer = Files.newBufferedWriter(logFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for (AttendanceAlert a : alerts) {
+                writer.write(a.getRaisedAt() + "\t" + a.getType() + "\t" + a.getStudentId() + "\t" + a.getSubject()
+                        + "\t" + a.getMarkDate() + "\t" + String.format("%.2f", a.getPercentage()) + "\t" + a.getThreshold());
+                writer.newLine();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package service;
+
+import model.AttendanceColumns;
+import model.AttendanceStats;
+import repository.AttendanceRepository;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Computes per-student streaks, absence runs, weekday patterns and trends.
+// Rows are bulk-loaded into AttendanceColumns ordered by (subject, student, date),
+// so each (subject, student) pair is one contiguous slice. The slices are split across a
+// ForkJoinPool and every metric for a slice is computed in one pass with
+// primitive accumulators.
+public class AttendanceAnalyticsService {
+
+    private static final int SLICES_PER_TASK = 64; // Below this a task runs sequentially
+
+    private final AttendanceRepository attendanceRepo;
+    private final ForkJoinPool pool;
+
+    public AttendanceAnalyticsService(AttendanceRepository attendanceRepo) {
+        this(attendanceRepo, ForkJoinPool.commonPool());
+    }
+
+    public AttendanceAnalyticsService(AttendanceRepository attendanceRepo, ForkJoinPool pool) {
+        this.attendanceRepo = attendanceRepo;
+        this.pool = pool;
+    }
+
+    // Whole school, grouped by subject
+    public Map<String, List<AttendanceStats>> analyzeSchool(LocalDate from, LocalDate to) {
+        List<AttendanceStats> all = analyze(null, from, to);
+        Map<String, List<AttendanceStats>> bySubject = new TreeMap<>();
+        for (AttendanceStats s : all) {
+            bySubject.computeIfAbsent(s.getSubject(), k -> new ArrayList<>()).add(s);
+        }
+        return bySubject;
+    }
+
+    public List<AttendanceStats> analyzeSubject(String subject, LocalDate from, LocalDate to) {
+        return analyze(subject, from, to);
+    }
+
+    private List<AttendanceStats> analyze(String subject, LocalDate from, LocalDate to) {
+        return analyzeColumns(attendanceRepo.getColumnsByDateRange(subject, from, to), from);
+    }
+
+    // For callers that already hold the rows; cols must be in the default
+    // (subject, student, date) order of getColumnsByDateRange
+    public List<AttendanceStats> analyzeColumns(AttendanceColumns cols, LocalDate from) {
+        // 1. Note where each (subject, student) slice starts
+        int n = cols.size();
+        if (n == 0) return new ArrayList<>();
+        int[] starts = new int[16];
+        int sliceCount = 0;
+        for (int i = 0; i < n; i++) {
+            if (i == 0 || cols.studentCode(i) != cols.studentCode(i - 1) || cols.subjectCode(i) != cols.subjectCode(i - 1)) {
+                if (sliceCount + 1 >= starts.length) starts = Arrays.copyOf(starts, starts.length * 2);
+                starts[sliceCount++] = i;
+            }
+        }
+        starts[sliceCount] = n; // Sentinel
+
+        // 2. Fan out over slices
+        AttendanceStats[] results = new AttendanceStats[sliceCount];
+        pool.invoke(new SliceTask(cols, starts, results, (int) from.toEpochDay(), 0, sliceCount));
+        return new ArrayList<>(Arrays.asList(results));
+    }
+
+    private static final class SliceTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        // ForkJoin tasks are never serialized; transient keeps -Xlint:serial quiet about these
+        private final transient AttendanceColumns cols;
+        private final int[] starts;
+        private final transient AttendanceStats[] results;
+        private final int originDay;
+        private final int lo, hi; // Slice index range [lo, hi)
+
+        SliceTask(AttendanceColumns cols, int[] starts, AttendanceStats[] results, int originDay, int lo, int hi) {
+            this.cols = cols;
+            this.starts = starts;
+            this.results = results;
+            this.originDay = originDay;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo <= SLICES_PER_TASK) {
+                for (int i = lo; i < hi; i++) results[i] = computeSlice(i);
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new SliceTask(cols, starts, results, originDay, lo, mid),
+                      new SliceTask(cols, starts, results, originDay, mid, hi));
+        }
+
+        private AttendanceStats computeSlice(int slice) {
+            int start = starts[slice];
+            int end = starts[slice + 1];
+
+            int present = 0, streak = 0, longestStreak = 0, absenceRun = 0, longestAbsence = 0;
+            int[] weekdayPresent = new int[7];
+            int[] weekdayTotal = new int[7];
+            // Least-squares accumulators for presence (0/1) against day offset
+            double sumX = 0, sumY = 0, sumXY = 0, sumXX = 0;
+
+            for (int i = start; i < end; i++) {
+                int day = cols.epochDay(i);
+                boolean p = cols.isPresent(i);
+                int weekday = Math.floorMod(day + 3, 7); // 1970-01-01 was a Thursday; 0 = Monday
+                weekdayTotal[weekday]++;
+                if (p) {
+                    present++;
+                    weekdayPresent[weekday]++;
+                    streak++;
+                    absenceRun = 0;
+                    if (streak > longestStreak) longestStreak = streak;
+                } else {
+                    absenceRun++;
+                    streak = 0;
+                    if (absenceRun > longestAbsence) longestAbsence = absenceRun;
+                }
+                double x = day - originDay;
+                double y = p ? 1 : 0;
+                sumX += x; sumY += y; sumXY += x * y; sumXX += x * x;
+            }
+
+            int n = end - start;
+            double denominator = n * sumXX - sumX * sumX;
+            double slopePerDay = denominator == 0 ? 0.0 : (n * sumXY - sumX * sumY) / denominator;
+
+            return new AttendanceStats(cols.getStudents().valueOf(cols.studentCode(start)),
+                    cols.getSubjects().valueOf(cols.subjectCode(start)), n, present,
+                    streak, longestStreak, longestAbsence, weekdayPresent, weekdayTotal, slopePerDay * 100.0 * 30);
+        }
+    }
+}
@@ -0,0 +1,520 @@
+package service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import model.AttendanceChanges;
+import model.AttendanceColumns;
+import model.AttendanceRecord;
+import model.AttendanceRecordCodec;
+import model.AttendanceRollup;
+import model.Student;
+import model.Teacher;
+import repository.ApiClient;
+import repository.AttendanceRepository;
+import repository.AuditJournal;
+import repository.DatabaseConnection;
+import repository.StudentRepository;
+import repository.TeacherRepository;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Headless HTTP front for the repositories, so classroom PCs can run the UI as a thin
+// client (-Dattendance.server=http://host:port, see ApiClient) instead of each opening
+// its own database connections. Every request runs on its own virtual thread and all
+// clients share this process's connection pool, roster cache and teacher cache.
+//
+// Bodies use DataOutput (writeUTF strings, big-endian numbers) and AttendanceRecordCodec
+// for record lists; reports are plain UTF-8 text. POST /api/login returns a session token
+// that every other call sends in the X-Session header. A teacher's token only reaches
+// their own subject and the draft sessions it opened; an owner's reaches everything.
+// Marks are only accepted for students enrolled in the call's subject.
+//
+// The server speaks plain HTTP: passwords and session tokens cross the network in
+// clear text. Keep it on loopback, or on a trusted LAN segment behind a TLS proxy.
+//
+//   POST /api/login                          boolean owner, UTF user, UTF password
+//   POST /api/logout
+//   GET  /api/roster
+//   GET  /api/records?[subject]&from&to[&order=date]
+//   GET  /api/changes?subject&afterVer
+//   GET  /api/archived-counts?subject
+//   GET  /api/counts?subject&student
+//   GET  /api/rollups?[subject]&type&from&to
+//   GET  /api/report?subject&teacher&from&to
+//   GET  /api/marked?subject&date
+//   POST /api/marks?subject&date             record block (ApiClient.writeRecords)
+//   POST /api/draft?subject&date
+//   GET  /api/draft/marks?subject&session
+//   POST /api/draft/marks?subject&session    varint count, then UTF id, boolean present
+//   POST /api/draft/finalize?subject&date&session
+//   POST /api/students                       owner: varint count, then UTF id, name, subject
+//   POST /api/students/edit?id               owner: UTF name, UTF subject
+//   POST /api/students/delete?id             owner
+//
+// Student writes go through here rather than straight to the database so the shared
+// roster cache is cleared at once and every client's next /api/roster sees them.
+public class AttendanceApiServer {
+
+    public static final String SESSION_HEADER = "X-Session";
+    public static final int DEFAULT_PORT = 8085;
+
+    private static final int BACKLOG = 128;
+    private static final int MAX_BODY_BYTES = 4 << 20;
+    private static final long SESSION_IDLE_MS = 12 * 60 * 60 * 1000L;
+    private static final long SESSION_SWEEP_MS = 10 * 60 * 1000L;
+
+    private final AttendanceRepository attendanceRepo;
+    private final StudentRepository studentRepo;
+    private final AuthService auth;
+    private final ReportWriter reports;
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "api-session-sweep");
+        t.setDaemon(true);
+        return t;
+    });
+    private final SecureRandom random = new SecureRandom();
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    public AttendanceApiServer(AttendanceRepository attendanceRepo, StudentRepository studentRepo, TeacherRepository teacherRepo,
+                               InetSocketAddress address) throws IOException {
+        if (ApiClient.isEnabled()) {
+            // AuthService would forward every login straight back to us
+            throw new IllegalStateException("The API server can't run as a thin client; unset -D" + ApiClient.SERVER_PROPERTY);
+        }
+        this.attendanceRepo = attendanceRepo;
+        this.studentRepo = studentRepo;
+        this.auth = new AuthService(teacherRepo, studentRepo);
+        this.reports = new ReportWriter(attendanceRepo);
+
+        // Headers and body go out as two writes; without TCP_NODELAY the body waits for
+        // the client's delayed ACK and every small response takes ~40 ms
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        server = HttpServer.create(address, BACKLOG);
+        server.setExecutor(executor);
+        route("/api/login", "POST", false, this::login);
+        route("/api/logout", "POST", true, call -> sessions.remove(call.token));
+        route("/api/roster", "GET", true, this::roster);
+        route("/api/records", "GET", true, this::records);
+        route("/api/changes", "GET", true, this::changes);
+        route("/api/archived-counts", "GET", true, this::archivedCounts);
+        route("/api/counts", "GET", true, this::counts);
+        route("/api/rollups", "GET", true, this::rollups);
+        route("/api/report", "GET", true, this::report);
+        route("/api/marked", "GET", true, call -> call.out.writeBoolean(attendanceRepo.isMarked(call.subject(), call.date("date"))));
+        route("/api/marks", "POST", true, this::addMarks);
+        route("/api/draft", "POST", true, this::openDraft);
+        route("/api/draft/marks", null, true, this::draftMarks);
+        route("/api/draft/finalize", "POST", true, this::finalizeDraft);
+        route("/api/students", "POST", true, this::addStudents);
+        route("/api/students/edit", "POST", true, this::editStudent);
+        route("/api/students/delete", "POST", true, this::deleteStudent);
+    }
+
+    public void start() {
+        server.start();
+        // Clients that never log out would otherwise keep their sessions forever
+        sweeper.scheduleWithFixedDelay(() -> sessions.values().removeIf(Session::expired),
+                SESSION_SWEEP_MS, SESSION_SWEEP_MS, TimeUnit.MILLISECONDS);
+    }
+
+    // Stops accepting requests and gives running ones a few seconds to finish
+    public void stop() {
+        sweeper.shutdownNow();
+        server.stop(3);
+        executor.shutdown();
+    }
+
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    public int getSessionCount() {
+        sessions.values().removeIf(Session::expired);
+        return sessions.size();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("requests=%d rejected=%d failed=%d sessions=%d",
+                requests.sum(), rejected.sum(), failed.sum(), getSessionCount());
+    }
+
+    // --- Endpoints ---
+
+    private void login(Call call) throws IOException {
+        DataInputStream in = call.body();
+        boolean owner = in.readBoolean();
+        String user = in.readUTF();
+        String password = in.readUTF();
+        // Each client address is its own terminal for the login rate limiter
+        String terminal = "api:" + call.exchange.getRemoteAddress().getAddress().getHostAddress();
+
+        Session session;
+        try {
+            if (owner) {
+                if (!auth.ownerLogin(user, password, terminal)) throw new ApiError(401, "Invalid credentials");
+                session = new Session(AuditJournal.getActor(), null);
+            } else {
+                Optional<Teacher> t = auth.teacherLogin(user, password, terminal);
+                if (t.isEmpty()) throw new ApiError(401, "Invalid credentials");
+                session = new Session(AuditJournal.getActor(), t.get().getSubject());
+            }
+        } catch (LoginRateLimiter.RateLimitedException e) {
+            call.exchange.getResponseHeaders().set("Retry-After", String.valueOf(e.getRetryAfterSeconds()));
+            throw new ApiError(429, e.getMessage());
+        }
+
+        byte[] bytes = new byte[24];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        sessions.put(token, session);
+
+        call.out.writeUTF(token);
+        call.out.writeUTF(session.subject == null ? "" : session.subject);
+    }
+
+    private void roster(Call call) throws IOException {
+        List<Student> students = new ArrayList<>();
+        for (Student s : studentRepo.getAll()) {
+            if (call.session.allows(s.getSubject())) students.add(s);
+        }
+        AttendanceRecordCodec.writeVarInt(call.out, students.size());
+        for (Student s : students) {
+            call.out.writeUTF(s.getId());
+            call.out.writeUTF(s.getName());
+            call.out.writeUTF(s.getSubject());
+        }
+    }
+
+    private void records(Call call) throws IOException {
+        AttendanceColumns cols = attendanceRepo.getColumnsByDateRange(call.subjectOrAll(), call.date("from"), call.date("to"),
+                "date".equals(call.param("order")));
+        List<AttendanceRecord> list = new ArrayList<>(cols.size());
+        AttendanceColumns.View v = cols.view();
+        for (int i = 0; i < cols.size(); i++) {
+            v.moveTo(i);
+            list.add(new AttendanceRecord(v.getStudentId(), v.getSubject(), v.getDate(), v.isPresent()));
+        }
+        ApiClient.writeRecords(call.out, list);
+    }
+
+    private void changes(Call call) throws IOException {
+        AttendanceChanges changes = attendanceRepo.getChangesSince(call.subject(), Long.parseLong(call.required("afterVer")));
+        call.out.writeLong(changes.getUpToRowVersion());
+        AttendanceRecordCodec.writeVarInt(call.out, changes.getRecords().size());
+        for (AttendanceRecord r : changes.getRecords()) {
+            call.out.writeInt(r.getRecordId());
+            call.out.writeLong(r.getRowVersion());
+            call.out.writeUTF(r.getStudentId());
+            call.out.writeInt((int) r.getDate().toEpochDay());
+            call.out.writeBoolean(r.isPresent());
+        }
+        AttendanceRecordCodec.writeVarInt(call.out, changes.getDeletedRecordIds().size());
+        for (int recordId : changes.getDeletedRecordIds()) call.out.writeInt(recordId);
+    }
+
+    private void archivedCounts(Call call) throws IOException {
+        Map<String, long[]> counts = attendanceRepo.getArchivedCounts(call.subject());
+        AttendanceRecordCodec.writeVarInt(call.out, counts.size());
+        for (Map.Entry<String, long[]> e : counts.entrySet()) {
+            call.out.writeUTF(e.getKey());
+            call.out.writeLong(e.getValue()[0]);
+            call.out.writeLong(e.getValue()[1]);
+        }
+    }
+
+    private void counts(Call call) throws IOException {
+        long[] c = attendanceRepo.getAttendanceCounts(call.required("student"), call.subject());
+        call.out.writeLong(c[0]);
+        call.out.writeLong(c[1]);
+    }
+
+    private void rollups(Call call) throws IOException {
+        String type = call.required("type");
+        List<AttendanceRollup> list = attendanceRepo.getRollups(call.subjectOrAll(), type.charAt(0), call.date("from"), call.date("to"));
+        AttendanceRecordCodec.writeVarInt(call.out, list.size());
+        for (AttendanceRollup r : list) {
+            call.out.writeUTF(r.getSubject());
+            call.out.writeInt((int) r.getPeriodStart().toEpochDay());
+            call.out.writeInt(r.getPresentCount());
+            call.out.writeInt(r.getAbsentCount());
+        }
+    }
+
+    private void report(Call call) throws IOException {
+        call.contentType = "text/plain; charset=utf-8";
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(call.out, StandardCharsets.UTF_8));
+        reports.writeDateRangeReport(writer, call.subject(), call.required("teacher"), call.date("from"), call.date("to"));
+        writer.flush();
+    }
+
+    private void addMarks(Call call) throws IOException {
+        String subject = call.subject();
+        LocalDate date = call.date("date");
+        List<AttendanceRecord> records = ApiClient.readRecords(call.body());
+        for (AttendanceRecord r : records) {
+            if (!r.getSubject().equalsIgnoreCase(subject) || !r.getDate().equals(date)) {
+                throw new ApiError(400, "Every mark must be for " + subject + " on " + date);
+            }
+        }
+        List<String> ids = new ArrayList<>();
+        for (AttendanceRecord r : records) ids.add(r.getStudentId());
+        requireEnrolled(subject, ids);
+        call.out.writeInt(attendanceRepo.addRecords(subject, date, records));
+    }
+
+    private void openDraft(Call call) throws IOException {
+        int id = attendanceRepo.openDraftSession(call.subject(), call.date("date"));
+        if (id >= 0) call.session.drafts.add(id);
+        call.out.writeInt(id);
+    }
+
+    private void draftMarks(Call call) throws IOException {
+        String subject = call.subject();
+        int sessionId = call.draft();
+        if ("GET".equals(call.exchange.getRequestMethod())) {
+            Map<String, Boolean> marks = attendanceRepo.getSessionMarks(subject, sessionId);
+            ApiClient.writeMarks(call.out, marks);
+        } else if ("POST".equals(call.exchange.getRequestMethod())) {
+            Map<String, Boolean> marks = ApiClient.readMarks(call.body());
+            requireEnrolled(subject, marks.keySet());
+            call.out.writeBoolean(attendanceRepo.saveDraftMarks(subject, sessionId, marks));
+        } else {
+            throw new ApiError(405, "GET or POST only");
+        }
+    }
+
+    private void finalizeDraft(Call call) throws IOException {
+        int sessionId = call.draft();
+        // Refused unless subject and date match the session's own row, so listeners and the
+        // journal can't be pointed at another day
+        boolean ok = attendanceRepo.finalizeSession(call.subject(), call.date("date"), sessionId);
+        if (ok) call.session.drafts.remove(sessionId);
+        call.out.writeBoolean(ok);
+    }
+
+    private void addStudents(Call call) throws IOException {
+        call.requireOwner();
+        DataInputStream in = call.body();
+        int n = AttendanceRecordCodec.readVarInt(in);
+        List<Student> students = new ArrayList<>(Math.min(n, 4096)); // n comes off the network
+        for (int i = 0; i < n; i++) students.add(new Student(in.readUTF(), in.readUTF(), in.readUTF()));
+        call.out.writeInt(studentRepo.addStudents(students));
+    }
+
+    private void editStudent(Call call) throws IOException {
+        call.requireOwner();
+        String id = call.required("id");
+        DataInputStream in = call.body();
+        call.out.writeBoolean(studentRepo.editStudent(id, new Student(id, in.readUTF(), in.readUTF())));
+    }
+
+    private void deleteStudent(Call call) throws IOException {
+        call.requireOwner();
+        studentRepo.deleteStudent(call.required("id"));
+    }
+
+    // Every id must be a student of 'subject'. Checked against the shared roster cache;
+    // an id it doesn't know is looked up, in case it was added from another client.
+    private void requireEnrolled(String subject, Collection<String> ids) {
+        Set<String> enrolled = new HashSet<>();
+        for (Student s : studentRepo.getAll()) {
+            if (subject.equalsIgnoreCase(s.getSubject())) enrolled.add(s.getId());
+        }
+        for (String id : ids) {
+            if (enrolled.contains(id)) continue;
+            Optional<Student> s = studentRepo.findById(id);
+            if (s.isEmpty() || !subject.equalsIgnoreCase(s.get().getSubject())) {
+                throw new ApiError(403, "Student " + id + " is not enrolled in " + subject);
+            }
+            StudentRepository.invalidateRoster(); // The cache is behind; refresh it for the next call
+            enrolled.add(id);
+        }
+    }
+
+    // --- Plumbing ---
+
+    private interface Endpoint {
+        void handle(Call call) throws IOException;
+    }
+
+    private static final class ApiError extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        ApiError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private static final class Session {
+        final String actor;
+        final String subject; // null for the owner
+        final Set<Integer> drafts = ConcurrentHashMap.newKeySet();
+        volatile long lastSeen = System.currentTimeMillis();
+
+        Session(String actor, String subject) {
+            this.actor = actor;
+            this.subject = subject;
+        }
+
+        boolean allows(String s) {
+            return subject == null || subject.equalsIgnoreCase(s);
+        }
+
+        boolean expired() {
+            return System.currentTimeMillis() - lastSeen > SESSION_IDLE_MS;
+        }
+    }
+
+    private final class Call {
+        final HttpExchange exchange;
+        final Map<String, String> params;
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(buffer);
+        String contentType = "application/octet-stream";
+        String token;
+        Session session;
+
+        Call(HttpExchange exchange) {
+            this.exchange = exchange;
+            this.params = parseQuery(exchange.getRequestURI().getRawQuery());
+        }
+
+        String param(String name) {
+            return params.get(name);
+        }
+
+        String required(String name) {
+            String value = params.get(name);
+            if (value == null || value.isEmpty()) throw new ApiError(400, "Missing parameter: " + name);
+            return value;
+        }
+
+        int intParam(String name) {
+            return Integer.parseInt(required(name));
+        }
+
+        LocalDate date(String name) {
+            return LocalDate.parse(required(name));
+        }
+
+        // The subject parameter, if this session may use it
+        String subject() {
+            String subject = required("subject");
+            if (!session.allows(subject)) throw new ApiError(403, "Not your subject: " + subject);
+            return subject;
+        }
+
+        // Owners may leave out the subject to mean every subject
+        String subjectOrAll() {
+            return param("subject") == null && session.subject == null ? null : subject();
+        }
+
+        void requireOwner() {
+            if (session.subject != null) throw new ApiError(403, "Owner only");
+        }
+
+        // The session parameter, if it is a draft this session opened
+        int draft() {
+            int id = intParam("session");
+            if (!session.drafts.contains(id)) throw new ApiError(403, "Unknown draft session: " + id);
+            return id;
+        }
+
+        DataInputStream body() throws IOException {
+            byte[] bytes = exchange.getRequestBody().readNBytes(MAX_BODY_BYTES + 1);
+            if (bytes.length > MAX_BODY_BYTES) throw new ApiError(413, "Request body too large");
+            return new DataInputStream(new ByteArrayInputStream(bytes));
+        }
+    }
+
+    private void route(String path, String method, boolean needsSession, Endpoint endpoint) {
+        server.createContext(path, exchange -> {
+            requests.increment();
+            try (exchange) {
+                Call call = new Call(exchange);
+                try {
+                    if (!exchange.getRequestURI().getPath().equals(path)) throw new ApiError(404, "No such endpoint");
+                    if (method != null && !method.equals(exchange.getRequestMethod())) throw new ApiError(405, method + " only");
+                    if (needsSession) {
+                        call.token = exchange.getRequestHeaders().getFirst(SESSION_HEADER);
+                        call.session = call.token == null ? null : sessions.get(call.token);
+                        if (call.session == null || call.session.expired()) {
+                            if (call.session != null) sessions.remove(call.token);
+                            throw new ApiError(401, "Not logged in");
+                        }
+                        call.session.lastSeen = System.currentTimeMillis();
+                        AuditJournal.setRequestActor(call.session.actor);
+                        // Read-your-writes per terminal, not for every request the server handles
+                        DatabaseConnection.setCaller(call.token);
+                    } else {
+                        AuditJournal.setRequestActor("api");
+                    }
+                    endpoint.handle(call);
+                    call.out.flush();
+                    send(exchange, 200, call.contentType, call.buffer.toByteArray());
+                } catch (ApiError e) {
+                    rejected.increment();
+                    send(exchange, e.status, "text/plain; charset=utf-8", e.getMessage().getBytes(StandardCharsets.UTF_8));
+                } catch (IOException | IllegalArgumentException | DateTimeParseException | IndexOutOfBoundsException e) {
+                    // Truncated or malformed body (endpoints only read the request and write to
+                    // call.buffer, so an I/O error here is the body's), bad number or date
+                    rejected.increment();
+                    send(exchange, 400, "text/plain; charset=utf-8", ("Bad request: " + e).getBytes(StandardCharsets.UTF_8));
+                } catch (RuntimeException e) {
+                    failed.increment();
+                    e.printStackTrace();
+                    send(exchange, 500, "text/plain; charset=utf-8", "Internal error".getBytes(StandardCharsets.UTF_8));
+                } finally {
+                    AuditJournal.setRequestActor(null);
+                    DatabaseConnection.clearCaller();
+                }
+            } catch (IOException e) {
+                failed.increment(); // Client went away mid-response
+            }
+        });
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        if (body.length > 0) exchange.getResponseBody().write(body);
+    }
+
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> params = new HashMap<>();
+        if (query == null) return params;
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq <= 0) continue;
+            params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                       URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+}
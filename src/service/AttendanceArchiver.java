@@ -0,0 +1,34 @@
+package service;
+
+import repository.AttendanceRepository;
+
+import java.time.LocalDate;
+
+// Moves closed months out of the hot Attendance table.
+// Everything older than the last 'keepMonths' full months (plus the current one)
+// is archived; set -Dattendance.archive.keepMonths=N to change the window.
+public class AttendanceArchiver {
+
+    private static final int DEFAULT_KEEP_MONTHS = 6;
+
+    private final AttendanceRepository attendanceRepo;
+    private final int keepMonths;
+
+    public AttendanceArchiver(AttendanceRepository attendanceRepo) {
+        this(attendanceRepo, Integer.getInteger("attendance.archive.keepMonths", DEFAULT_KEEP_MONTHS));
+    }
+
+    public AttendanceArchiver(AttendanceRepository attendanceRepo, int keepMonths) {
+        this.attendanceRepo = attendanceRepo;
+        this.keepMonths = keepMonths;
+    }
+
+    public LocalDate getCutoff() {
+        return LocalDate.now().withDayOfMonth(1).minusMonths(keepMonths);
+    }
+
+    // Safe to run from several clients: a second run finds nothing left to move
+    public int archiveClosedMonths() {
+        return attendanceRepo.archiveBefore(getCutoff());
+    }
+}
@@ -0,0 +1,174 @@
+package service;
+
+import model.AttendanceRecord;
+import repository.AttendanceRepository;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.Consumer;
+
+// Prefix-sum index over one subject's attendance: for every student it keeps
+// cumulative present/total counts per day, so "attendance % between two dates"
+// is two array lookups instead of a database scan. The index is built once and
+// then kept current from the repository's save events.
+//
+// Days are calendar days (not school days): days without a session simply
+// repeat the previous cumulative value, which keeps the lookup a plain
+// subtraction for any two dates.
+//
+// Saves only ever add marks. When marks are edited or deleted (a student delete,
+// tombstones seen by delta sync) the owner calls rebuild(), which reloads the
+// subject and swaps the new series in.
+//
+// The index listens to the shared repository, so whoever opens one must close() it.
+public class AttendanceRangeIndex {
+
+    private static final LocalDate MIN_DATE = LocalDate.of(1900, 1, 1);
+    private static final LocalDate MAX_DATE = LocalDate.of(9999, 12, 31);
+
+    // Cumulative counts for one student; index i covers baseDay .. baseDay + i
+    private static final class Series {
+        int baseDay;
+        int length = 0;
+        int[] cumPresent = new int[32];
+        int[] cumTotal = new int[32];
+
+        Series(int firstDay) {
+            this.baseDay = firstDay;
+        }
+
+        void add(int day, boolean present) {
+            if (day < baseDay) shiftBase(day);
+            int idx = day - baseDay;
+            if (idx >= length) extendTo(idx);
+            // Usually idx is the last slot, so this loop runs once
+            for (int i = idx; i < length; i++) {
+                cumTotal[i]++;
+                if (present) cumPresent[i]++;
+            }
+        }
+
+        private void extendTo(int idx) {
+            if (idx >= cumTotal.length) {
+                int cap = Math.max(idx + 1, cumTotal.length * 2);
+                cumTotal = Arrays.copyOf(cumTotal, cap);
+                cumPresent = Arrays.copyOf(cumPresent, cap);
+            }
+            int lastTotal = length > 0 ? cumTotal[length - 1] : 0;
+            int lastPresent = length > 0 ? cumPresent[length - 1] : 0;
+            for (int i = length; i <= idx; i++) {
+                cumTotal[i] = lastTotal;
+                cumPresent[i] = lastPresent;
+            }
+            length = idx + 1;
+        }
+
+        // Rare: a record older than anything seen so far
+        private void shiftBase(int newBase) {
+            int shift = baseDay - newBase;
+            int[] total = new int[Math.max(cumTotal.length, length + shift)];
+            int[] present = new int[total.length];
+            System.arraycopy(cumTotal, 0, total, shift, length);
+            System.arraycopy(cumPresent, 0, present, shift, length);
+            cumTotal = total;
+            cumPresent = present;
+            baseDay = newBase;
+            length += shift;
+        }
+
+        // A student has at most one mark per subject and day
+        boolean hasMark(int day) {
+            return at(cumTotal, day) - at(cumTotal, day - 1) > 0;
+        }
+
+        // Cumulative value at 'day' (inclusive), clamped to the indexed range
+        int at(int[] cum, int day) {
+            int idx = day - baseDay;
+            if (idx < 0 || length == 0) return 0;
+            return cum[Math.min(idx, length - 1)];
+        }
+    }
+
+    private final String subject;
+    private final AttendanceRepository attendanceRepo;
+    private final Consumer<List<AttendanceRecord>> saveListener = this::onSaved;
+    private final Object rebuildLock = new Object();
+    private Map<String, Series> byStudent = new HashMap<>();
+    private List<AttendanceRecord> pending; // Saves heard while a load runs
+
+    private AttendanceRangeIndex(AttendanceRepository attendanceRepo, String subject) {
+        this.subject = subject;
+        this.attendanceRepo = attendanceRepo;
+    }
+
+    // Builds the index and starts following saves
+    public static AttendanceRangeIndex open(AttendanceRepository attendanceRepo, String subject) {
+        AttendanceRangeIndex index = new AttendanceRangeIndex(attendanceRepo, subject);
+        // Listen before loading so a save made meanwhile can't fall in between
+        attendanceRepo.addSaveListener(index.saveListener);
+        index.rebuild();
+        return index;
+    }
+
+    // Reloads the subject from the database; readers keep the old series until it is done
+    public void rebuild() {
+        synchronized (rebuildLock) {
+            synchronized (this) {
+                pending = new ArrayList<>();
+            }
+            Map<String, Series> fresh = new HashMap<>();
+            attendanceRepo.streamRecordsByDateRange(subject, MIN_DATE, MAX_DATE, r -> add(fresh, r));
+            synchronized (this) {
+                byStudent = fresh;
+                for (AttendanceRecord r : pending) appendIfNew(r); // The load may already have seen it
+                pending = null;
+            }
+        }
+    }
+
+    public String getSubject() { return subject; }
+
+    // Stops following saves
+    public void close() {
+        attendanceRepo.removeSaveListener(saveListener);
+    }
+
+    private synchronized void onSaved(List<AttendanceRecord> saved) {
+        for (AttendanceRecord r : saved) {
+            if (!r.getSubject().equalsIgnoreCase(subject)) continue;
+            if (pending != null) pending.add(r);
+            else appendIfNew(r);
+        }
+    }
+
+    public synchronized void append(AttendanceRecord r) {
+        add(byStudent, r);
+    }
+
+    private static void add(Map<String, Series> target, AttendanceRecord r) {
+        int day = (int) r.getDate().toEpochDay();
+        target.computeIfAbsent(r.getStudentId(), k -> new Series(day)).add(day, r.isPresent());
+    }
+
+    private void appendIfNew(AttendanceRecord r) {
+        Series s = byStudent.get(r.getStudentId());
+        if (s == null || !s.hasMark((int) r.getDate().toEpochDay())) append(r);
+    }
+
+    // Returns {present, total} for the student between the two dates (inclusive)
+    public synchronized int[] getRangeCounts(String studentId, LocalDate from, LocalDate to) {
+        Series s = byStudent.get(studentId);
+        if (s == null || from.isAfter(to)) return new int[]{0, 0};
+        int hi = (int) to.toEpochDay();
+        int lo = (int) from.toEpochDay() - 1;
+        return new int[]{
+            s.at(s.cumPresent, hi) - s.at(s.cumPresent, lo),
+            s.at(s.cumTotal, hi) - s.at(s.cumTotal, lo)
+        };
+    }
+
+    public double getRangePercentage(String studentId, LocalDate from, LocalDate to) {
+        int[] counts = getRangeCounts(studentId, from, to);
+        return counts[1] == 0 ? 0.0 : (double) counts[0] / counts[1] * 100.0;
+    }
+}
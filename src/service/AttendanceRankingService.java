@@ -0,0 +1,98 @@
+package service;
+
+import model.AttendanceTotal;
+import repository.AttendanceRepository;
+import repository.DatabaseConnection;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+// Lowest-attendance ranking across the school or within one subject.
+// Totals are streamed from the database one student at a time into a max-heap
+// bounded to the rows needed for the requested page, so memory and sort cost
+// depend on the page, not on the number of students. With several shards each
+// one fills its own heap in parallel and the heaps are merged.
+public class AttendanceRankingService {
+
+    // Lowest rate first; with equal rates, more sessions first (a steadier signal)
+    private static final Comparator<AttendanceTotal> LOWEST_FIRST = Comparator
+            .comparingDouble(AttendanceTotal::getPercentage)
+            .thenComparing(Comparator.comparingInt(AttendanceTotal::getTotalSessions).reversed())
+            .thenComparing(AttendanceTotal::getStudentId)
+            .thenComparing(AttendanceTotal::getSubject);
+
+    private final AttendanceRepository attendanceRepo;
+
+    // One page of the ranking; ranks are 1-based across all pages
+    public static class Page {
+        public final List<AttendanceTotal> rows;
+        public final int firstRank;
+        public final int matched;   // Students that passed the filters
+        public final boolean hasNext;
+
+        Page(List<AttendanceTotal> rows, int firstRank, int matched, boolean hasNext) {
+            this.rows = rows;
+            this.firstRank = firstRank;
+            this.matched = matched;
+            this.hasNext = hasNext;
+        }
+    }
+
+    public AttendanceRankingService(AttendanceRepository attendanceRepo) {
+        this.attendanceRepo = attendanceRepo;
+    }
+
+    // 'subject' null ranks every subject together; 'page' is 0-based
+    public Page lowest(String subject, LocalDate from, LocalDate to, int minSessions, int page, int pageSize) {
+        int keep = (page + 1) * pageSize;
+        List<AttendanceTotal> kept = new ArrayList<>();
+        int matched = 0;
+
+        if (subject != null) {
+            Heap heap = new Heap(keep);
+            attendanceRepo.streamTotalsByDateRange(subject, from, to, minSessions, heap::offer);
+            kept.addAll(heap.queue);
+            matched = heap.seen;
+        } else {
+            for (Heap heap : DatabaseConnection.scatter(() -> {
+                Heap h = new Heap(keep);
+                attendanceRepo.streamTotalsByDateRange(null, from, to, minSessions, h::offer); // This shard only
+                return h;
+            })) {
+                kept.addAll(heap.queue);
+                matched += heap.seen;
+            }
+        }
+
+        // Each heap holds its shard's lowest 'keep', so together they hold the overall lowest 'keep'
+        kept.sort(LOWEST_FIRST);
+        if (kept.size() > keep) kept = kept.subList(0, keep);
+        int start = Math.min(page * pageSize, kept.size());
+        return new Page(new ArrayList<>(kept.subList(start, kept.size())), start + 1, matched, matched > keep);
+    }
+
+    // Bounded max-heap: keeps the 'capacity' lowest totals offered
+    private static final class Heap {
+        final PriorityQueue<AttendanceTotal> queue;
+        final int capacity;
+        int seen = 0;
+
+        Heap(int capacity) {
+            this.capacity = capacity;
+            this.queue = new PriorityQueue<>(capacity + 1, LOWEST_FIRST.reversed()); // Head = highest kept
+        }
+
+        void offer(AttendanceTotal t) {
+            seen++;
+            if (queue.size() < capacity) {
+                queue.add(t);
+            } else if (LOWEST_FIRST.compare(t, queue.peek()) < 0) {
+                queue.poll();
+                queue.add(t);
+            }
+        }
+    }
+}
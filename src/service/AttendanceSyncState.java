@@ -0,0 +1,92 @@
+package service;
+
+import model.AttendanceChanges;
+import model.AttendanceRecord;
+import repository.AttendanceRepository;
+
+import java.util.*;
+
+// Client-side attendance state for one subject, kept current by delta sync.
+// The first refresh loads the hot rows and the archived counters; after that
+// only rows added, edited or deleted above the last row version are fetched
+// and folded into the per-student counters. Refresh cost therefore follows new
+// activity, not the size of the history.
+public class AttendanceSyncState {
+
+    private final AttendanceRepository attendanceRepo;
+    private final String subject;
+
+    private final Map<String, long[]> countsByStudent = new HashMap<>(); // {present, total}
+    private final Map<Integer, AttendanceRecord> knownRows = new HashMap<>(); // Hot rows by record_id, to undo edits
+    private boolean loaded = false;
+    private long lastRowVersion = 0;
+    private boolean rowsRemoved = false; // An edit or delete took a mark back out since the last check
+
+    public AttendanceSyncState(AttendanceRepository attendanceRepo, String subject) {
+        this.attendanceRepo = attendanceRepo;
+        this.subject = subject;
+    }
+
+    // Returns the ids of students whose counters changed (everyone on the first load)
+    public synchronized Set<String> refresh() {
+        Set<String> changed = new HashSet<>();
+        if (!loaded) {
+            for (Map.Entry<String, long[]> e : attendanceRepo.getArchivedCounts(subject).entrySet()) {
+                countsByStudent.put(e.getKey(), e.getValue().clone());
+                changed.add(e.getKey());
+            }
+            apply(attendanceRepo.getHotRecords(subject), changed);
+            loaded = true;
+        } else {
+            apply(attendanceRepo.getChangesSince(subject, lastRowVersion), changed);
+        }
+        return changed;
+    }
+
+    private void apply(AttendanceChanges changes, Set<String> changed) {
+        for (AttendanceRecord r : changes.getRecords()) {
+            AttendanceRecord previous = knownRows.put(r.getRecordId(), r);
+            if (previous != null) {
+                // Edited row: take the old mark back out first
+                adjust(previous, -1);
+                changed.add(previous.getStudentId());
+                rowsRemoved = true;
+            }
+            adjust(r, +1);
+            changed.add(r.getStudentId());
+        }
+        for (int recordId : changes.getDeletedRecordIds()) {
+            AttendanceRecord previous = knownRows.remove(recordId);
+            if (previous == null) continue; // Added and deleted between two refreshes
+            adjust(previous, -1);
+            changed.add(previous.getStudentId());
+            rowsRemoved = true;
+        }
+        // Only up to the read's cap, not the highest version seen: see getChangesSince
+        lastRowVersion = Math.max(lastRowVersion, changes.getUpToRowVersion());
+    }
+
+    // True once per batch of edits/deletes, so append-only views (AttendanceRangeIndex) can rebuild
+    public synchronized boolean takeRowsRemoved() {
+        boolean removed = rowsRemoved;
+        rowsRemoved = false;
+        return removed;
+    }
+
+    private void adjust(AttendanceRecord r, int sign) {
+        long[] c = countsByStudent.computeIfAbsent(r.getStudentId(), k -> new long[2]);
+        if (r.isPresent()) c[0] += sign;
+        c[1] += sign;
+    }
+
+    public synchronized double getPercentage(String studentId) {
+        long[] c = countsByStudent.get(studentId);
+        if (c == null || c[1] == 0) return 0.0;
+        return (double) c[0] / c[1] * 100.0;
+    }
+
+    public synchronized long[] getCounts(String studentId) {
+        long[] c = countsByStudent.get(studentId);
+        return c == null ? new long[]{0, 0} : c.clone();
+    }
+}
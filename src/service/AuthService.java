@@ -1,49 +1,93 @@
 package service;
 
+import repository.ApiClient;
+import repository.AuditJournal;
 import repository.TeacherRepository;
 import repository.StudentRepository;
+import model.AuditEntry;
 import model.Teacher;
+import java.io.DataInputStream;
+import java.io.IOException;
 import java.util.*;
-import java.io.*;
 
 public class AuthService {
     
     private TeacherRepository teacherRepo;
     private StudentRepository studentRepo;
     
-    // File to store owner credentials persistently
-    private static final String OWNER_FILE = "owner_config.ser"; 
-    
     public AuthService(TeacherRepository tr, StudentRepository sr){
         this.teacherRepo = tr;
         this.studentRepo = sr;
     }
     
-    // UPDATED: Owner Login Logic with File Support
+    // UPDATED: Owner Login checks the cached credential snapshot (no file I/O per attempt)
+    // Throws LoginRateLimiter.RateLimitedException after too many attempts in a row
     public boolean ownerLogin(String u, String p){
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(OWNER_FILE))) {
-            // Read credentials from file if it exists
-            String[] creds = (String[]) ois.readObject();
-            return creds[0].equals(u) && creds[1].equals(p);
-        } catch (Exception e) {
-            // Fallback to default credentials if file does not exist
-            return u.equals("owner") && p.equals("123");
+        return ownerLogin(u, p, LoginRateLimiter.LOCAL_TERMINAL);
+    }
+    
+    public boolean ownerLogin(String u, String p, String terminal){
+        if (ApiClient.isEnabled()) return remoteLogin(true, u, p) != null;
+        LoginRateLimiter.acquire("owner:" + u, terminal);
+        boolean ok = OwnerCredentialStore.matches(u, p);
+        if (ok) {
+            LoginRateLimiter.reset("owner:" + u, terminal);
+            loggedIn("owner:" + u, terminal);
         }
+        return ok;
     }
     
     // NEW: Method to update owner credentials from Settings
-    public void updateOwnerCredentials(String newUsername, String newPassword) {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(OWNER_FILE))) {
-            oos.writeObject(new String[]{newUsername, newPassword});
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+    // False if the new credentials couldn't be saved (the old ones stay valid)
+    public boolean updateOwnerCredentials(String newUsername, String newPassword) {
+        return OwnerCredentialStore.update(newUsername, newPassword);
     }
     
-    // Teacher Login Logic (Unchanged)
+    // Teacher Login Logic (lookups are cached by TeacherRepository)
+    // Throws LoginRateLimiter.RateLimitedException after too many attempts in a row
     public Optional<Teacher> teacherLogin(String u,String p){
+        return teacherLogin(u, p, LoginRateLimiter.LOCAL_TERMINAL);
+    }
+    
+    public Optional<Teacher> teacherLogin(String u, String p, String terminal){
+        if (ApiClient.isEnabled()) {
+            String subject = remoteLogin(false, u, p);
+            return subject == null ? Optional.empty() : Optional.of(new Teacher(u, p, subject));
+        }
+        LoginRateLimiter.acquire(u, terminal);
         Optional<Teacher> t = teacherRepo.find(u);
-        if(t.isPresent() && t.get().getPassword().equals(p)) return t;
+        if(t.isPresent() && t.get().getPassword().equals(p)) {
+            LoginRateLimiter.reset(u, terminal);
+            loggedIn(u, terminal);
+            return t;
+        }
         return Optional.empty();
     }
+    
+    // Thin client: the server checks the credentials and rate-limits by client address.
+    // Returns the teacher's subject ("" for the owner), or null if the login was refused.
+    private String remoteLogin(boolean owner, String u, String p) {
+        try {
+            DataInputStream in = ApiClient.post("/api/login", out -> {
+                out.writeBoolean(owner);
+                out.writeUTF(u);
+                out.writeUTF(p);
+            });
+            ApiClient.setSession(in.readUTF());
+            AuditJournal.setActor(owner ? "owner:" + u : u);
+            return in.readUTF();
+        } catch (ApiClient.ApiException e) {
+            if (e.getStatus() == 429) throw new LoginRateLimiter.RateLimitedException(e.getRetryAfterSeconds());
+            if (e.getStatus() != 401) e.printStackTrace();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+    
+    // Changes made from now on are attributed to this user in the audit journal
+    private void loggedIn(String actor, String terminal) {
+        AuditJournal.setActor(actor);
+        AuditJournal.record(AuditEntry.Operation.LOGIN, null, actor, terminal);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,157 @@
+package service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+// Local, memory-mapped copy of a teacher dashboard: the class roster and every
+// student's present/total counters. The dashboard paints from it straight away
+// at login and reconciles with the database in the background.
+//
+// File layout (snapshots/<subject>.snap):
+//   int magic | int version | long savedAt | int payloadLength | long crc32 | payload
+//   payload = str subject | int count | count x (str id | str name | long present | long total)
+//   str     = unsigned short length | UTF-8 bytes
+//
+// The file is rewritten in place and never truncated (Windows refuses to truncate
+// a file that is still mapped), so the header carries the payload length and a
+// checksum; a torn or stale write is simply ignored.
+public class DashboardSnapshot {
+
+    private static final int MAGIC = 0x534E4150; // "SNAP"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 4 + 8;
+    private static final Path DIRECTORY = Paths.get("snapshots");
+
+    public static class Entry {
+        private final String studentId;
+        private final String name;
+        private final long present;
+        private final long total;
+
+        public Entry(String studentId, String name, long present, long total) {
+            this.studentId = studentId;
+            this.name = name;
+            this.present = present;
+            this.total = total;
+        }
+
+        public String getStudentId() { return studentId; }
+        public String getName() { return name; }
+        public long getPresent() { return present; }
+        public long getTotal() { return total; }
+
+        public double getPercentage() {
+            return total == 0 ? 0.0 : (double) present / total * 100.0;
+        }
+    }
+
+    private final long savedAt;
+    private final List<Entry> entries;
+
+    private DashboardSnapshot(long savedAt, List<Entry> entries) {
+        this.savedAt = savedAt;
+        this.entries = entries;
+    }
+
+    public long getSavedAt() { return savedAt; }
+    public List<Entry> getEntries() { return entries; }
+
+    // Returns null when there is no usable snapshot for the subject
+    public static DashboardSnapshot load(String subject) {
+        Path file = fileFor(subject);
+        if (!Files.exists(file)) return null;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (ch.size() < HEADER_SIZE) return null;
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            if (buf.getInt() != MAGIC || buf.getInt() != VERSION) return null;
+            long savedAt = buf.getLong();
+            int length = buf.getInt();
+            long crc = buf.getLong();
+            if (length < 0 || HEADER_SIZE + (long) length > ch.size()) return null;
+
+            ByteBuffer payload = buf.slice(HEADER_SIZE, length);
+            CRC32 check = new CRC32();
+            check.update(payload.duplicate());
+            if (check.getValue() != crc) return null;
+
+            if (!subject.equals(readString(payload))) return null;
+            int count = payload.getInt();
+            List<Entry> entries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                entries.add(new Entry(readString(payload), readString(payload), payload.getLong(), payload.getLong()));
+            }
+            return new DashboardSnapshot(savedAt, Collections.unmodifiableList(entries));
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    public static void save(String subject, List<Entry> entries) {
+        ByteBuffer payload = ByteBuffer.allocate(estimateSize(subject, entries));
+        writeString(payload, subject);
+        payload.putInt(entries.size());
+        for (Entry e : entries) {
+            writeString(payload, e.studentId);
+            writeString(payload, e.name);
+            payload.putLong(e.present);
+            payload.putLong(e.total);
+        }
+        payload.flip();
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+
+        try {
+            Files.createDirectories(DIRECTORY);
+            try (FileChannel ch = FileChannel.open(fileFor(subject),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                int length = payload.remaining();
+                long size = Math.max(ch.size(), HEADER_SIZE + length);
+                MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                buf.putInt(MAGIC);
+                buf.putInt(VERSION);
+                buf.putLong(System.currentTimeMillis());
+                buf.putInt(length);
+                buf.putLong(crc.getValue());
+                buf.put(payload);
+                buf.force();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static Path fileFor(String subject) {
+        return DIRECTORY.resolve(subject.replaceAll("[^A-Za-z0-9_-]", "_") + ".snap");
+    }
+
+    private static int estimateSize(String subject, List<Entry> entries) {
+        int size = 2 + utf8Length(subject) + 4;
+        for (Entry e : entries) size += 2 + utf8Length(e.studentId) + 2 + utf8Length(e.name) + 16;
+        return size;
+    }
+
+    private static int utf8Length(String s) {
+        return s.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static void writeString(ByteBuffer buf, String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        buf.putShort((short) bytes.length);
+        buf.put(bytes);
+    }
+
+    private static String readString(ByteBuffer buf) {
+        byte[] bytes = new byte[Short.toUnsignedInt(buf.getShort())];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,208 @@
+package service;
+
+import model.AttendanceRecord;
+import model.Student;
+import repository.AttendanceRepository;
+import repository.StudentRepository;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+// Marks students present from ID-card/barcode scans at the classroom door.
+// Any number of doors (threads) call submit(); a scan is checked against the
+// roster and a per-(subject, day) seen-set, so repeated scans are dropped without
+// locking or touching the database, and accepted scans go into a bounded queue.
+// One writer thread drains the queue and saves each batch, one transaction per
+// subject and day. It also reloads the roster when a door has seen an unknown
+// card, so door threads never wait on the database.
+//
+// A scan marks the student present in the day's draft session for their subject
+// (the one the marking dialog autosaves to). The day only counts as "attendance
+// taken" once the teacher finalizes it, with absentees, from the dashboard.
+// Scans that arrive after that are added to the final session.
+public class KioskIngestionService {
+
+    public enum Result { ACCEPTED, DUPLICATE, UNKNOWN_CARD, BUSY }
+
+    private static final int QUEUE_CAPACITY = 10_000;
+    private static final int MAX_BATCH = 500;
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long RETRY_DELAY_MS = 1_000;
+    private static final long ROSTER_RELOAD_MS = 30_000;
+
+    private final AttendanceRepository attendanceRepo;
+    private final StudentRepository studentRepo;
+    private final String onlySubject; // null accepts every subject
+
+    private final BlockingQueue<AttendanceRecord> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Map<String, Set<String>> seen = new ConcurrentHashMap<>(); // subject + '\0' + date -> student ids
+    private volatile Map<String, Student> roster = Map.of();
+    private volatile long rosterLoadedAt = 0;
+    private final AtomicBoolean rosterReloadWanted = new AtomicBoolean(false);
+    private volatile LocalDate seenDay = LocalDate.now();
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder unknown = new LongAdder();
+    private final LongAdder busy = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    private Thread writer;
+    private volatile boolean running = false;
+
+    public KioskIngestionService(AttendanceRepository attendanceRepo, StudentRepository studentRepo, String onlySubject) {
+        this.attendanceRepo = attendanceRepo;
+        this.studentRepo = studentRepo;
+        this.onlySubject = onlySubject;
+    }
+
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        reloadRoster();
+        writer = new Thread(this::drain, "kiosk-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // Stops accepting scans and waits until everything queued has been written
+    public void stop() throws InterruptedException {
+        Thread t;
+        synchronized (this) {
+            if (!running) return;
+            running = false;
+            t = writer;
+        }
+        t.join();
+    }
+
+    // Called by door threads; never blocks
+    public Result submit(String code) {
+        if (!running) return Result.BUSY;
+        String id = code.trim();
+        Student s = roster.get(id);
+        if (s == null && System.currentTimeMillis() - rosterLoadedAt > ROSTER_RELOAD_MS) {
+            rosterReloadWanted.set(true); // A student added since the kiosk started; they can scan again shortly
+        }
+        if (s == null || (onlySubject != null && !s.getSubject().equalsIgnoreCase(onlySubject))) {
+            unknown.increment();
+            return Result.UNKNOWN_CARD;
+        }
+
+        LocalDate today = LocalDate.now();
+        Set<String> ids = seenSet(s.getSubject(), today);
+        if (!ids.add(s.getId())) {
+            duplicates.increment();
+            return Result.DUPLICATE;
+        }
+        if (!queue.offer(new AttendanceRecord(s.getId(), s.getSubject(), today, true))) {
+            ids.remove(s.getId()); // Let the student scan again
+            busy.increment();
+            return Result.BUSY;
+        }
+        accepted.increment();
+        return Result.ACCEPTED;
+    }
+
+    private Set<String> seenSet(String subject, LocalDate day) {
+        if (!day.equals(seenDay)) {
+            seenDay = day;
+            String suffix = "\0" + day;
+            seen.keySet().removeIf(k -> !k.endsWith(suffix)); // Yesterday's sets are no longer needed
+        }
+        return seen.computeIfAbsent(subject.toLowerCase() + "\0" + day, k -> ConcurrentHashMap.newKeySet());
+    }
+
+    // Called by start() and then only by the writer thread
+    private synchronized void reloadRoster() {
+        rosterReloadWanted.set(false);
+        if (System.currentTimeMillis() - rosterLoadedAt <= ROSTER_RELOAD_MS && !roster.isEmpty()) return;
+        StudentRepository.invalidateRoster();
+        Map<String, Student> map = new HashMap<>();
+        for (Student s : studentRepo.getAll()) map.put(s.getId(), s);
+        roster = map;
+        rosterLoadedAt = System.currentTimeMillis();
+    }
+
+    // --- Writer thread ---
+    private void drain() {
+        List<AttendanceRecord> batch = new ArrayList<>(MAX_BATCH);
+        while (running || !queue.isEmpty()) {
+            try {
+                if (rosterReloadWanted.get()) reloadRoster();
+                AttendanceRecord first = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                e.printStackTrace(); // Keep the kiosk running
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<AttendanceRecord> batch) throws InterruptedException {
+        Map<String, List<AttendanceRecord>> bySession = new LinkedHashMap<>();
+        for (AttendanceRecord r : batch) {
+            bySession.computeIfAbsent(r.getSubject() + "\0" + r.getDate(), k -> new ArrayList<>()).add(r);
+        }
+        for (List<AttendanceRecord> session : bySession.values()) {
+            AttendanceRecord head = session.get(0);
+            int rows = -1;
+            for (int attempt = 1; attempt <= MAX_ATTEMPTS && rows < 0; attempt++) {
+                if (attempt > 1) Thread.sleep(RETRY_DELAY_MS);
+                rows = writeSession(head.getSubject(), head.getDate(), session);
+            }
+            if (rows >= 0) {
+                written.add(session.size());
+            } else {
+                // Give up on these; forget them so the students can scan again
+                failed.add(session.size());
+                Set<String> ids = seen.get(head.getSubject().toLowerCase() + "\0" + head.getDate());
+                if (ids != null) {
+                    for (AttendanceRecord r : session) ids.remove(r.getStudentId());
+                }
+            }
+        }
+    }
+
+    // Rows written, or -1 to try again
+    private int writeSession(String subject, LocalDate date, List<AttendanceRecord> session) {
+        int sessionId = attendanceRepo.openDraftSession(subject, date);
+        if (sessionId >= 0) {
+            Map<String, Boolean> marks = new LinkedHashMap<>();
+            for (AttendanceRecord r : session) marks.put(r.getStudentId(), true);
+            if (attendanceRepo.saveDraftMarks(subject, sessionId, marks)) return session.size();
+        }
+        // No draft to write to: either the teacher has finalized the day (late arrivals
+        // are added to it; students with a mark keep theirs) or the database failed
+        if (attendanceRepo.isMarked(subject, date)) return attendanceRepo.addRecords(subject, date, session);
+        return -1;
+    }
+
+    public int getQueueDepth() { return queue.size(); }
+    public long getAccepted() { return accepted.sum(); }
+    public long getDuplicates() { return duplicates.sum(); }
+    public long getUnknown() { return unknown.sum(); }
+    public long getBusy() { return busy.sum(); }
+    public long getWritten() { return written.sum(); }
+    public long getFailed() { return failed.sum(); }
+
+    @Override
+    public String toString() {
+        return String.format("accepted=%d duplicate=%d unknown=%d busy=%d written=%d failed=%d queued=%d",
+                getAccepted(), getDuplicates(), getUnknown(), getBusy(), getWritten(), getFailed(), getQueueDepth());
+    }
+}
@@ -0,0 +1,111 @@
+package service;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Token bucket per username and terminal. Each login attempt takes a token; a
+// burst of BURST attempts is allowed, then one more every REFILL_MS. Rejected
+// attempts are answered from memory and never reach the database.
+// Buckets are shared by every AuthService in the process. When there are too many,
+// refilled ones go first, then the least recently used; a bucket that is out of
+// tokens is never dropped, so flooding with other names can't unlock a key.
+public class LoginRateLimiter {
+
+    private static final int BURST = 5;
+    private static final long REFILL_MS = 10_000;
+    private static final int MAX_BUCKETS = 10_000;
+
+    // This machine, for logins made through the desktop UI
+    public static final String LOCAL_TERMINAL = localTerminal();
+
+    // Thrown instead of checking credentials while a key is over its limit
+    public static class RateLimitedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final long retryAfterSeconds;
+
+        RateLimitedException(long retryAfterSeconds) {
+            super("Too many login attempts, try again in " + retryAfterSeconds + " seconds");
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        public long getRetryAfterSeconds() { return retryAfterSeconds; }
+    }
+
+    private static final class Bucket {
+        double tokens = BURST;
+        long updatedAt = System.currentTimeMillis();
+
+        // Returns 0 if a token was taken, otherwise milliseconds until the next one
+        synchronized long take() {
+            long now = System.currentTimeMillis();
+            tokens = Math.min(BURST, tokens + (double) (now - updatedAt) / REFILL_MS);
+            updatedAt = now;
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return (long) Math.ceil((1 - tokens) * REFILL_MS);
+        }
+
+        synchronized double tokensAt(long now) {
+            return Math.min(BURST, tokens + (double) (now - updatedAt) / REFILL_MS);
+        }
+
+        synchronized long lastUsed() {
+            return updatedAt;
+        }
+    }
+
+    private static final ConcurrentHashMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    private LoginRateLimiter() {}
+
+    // Takes a token for this attempt or throws RateLimitedException
+    public static void acquire(String username, String terminal) {
+        if (buckets.size() >= MAX_BUCKETS) evict(); // Random names can't grow it without bound
+        long waitMs = buckets.computeIfAbsent(key(username, terminal), k -> new Bucket()).take();
+        if (waitMs > 0) throw new RateLimitedException(Math.max(1, (waitMs + 999) / 1000));
+    }
+
+    // A successful login starts the next session with a full bucket
+    public static void reset(String username, String terminal) {
+        buckets.remove(key(username, terminal));
+    }
+
+    private static synchronized void evict() {
+        if (buckets.size() < MAX_BUCKETS) return; // Another thread just did it
+        long now = System.currentTimeMillis();
+        // A full bucket is the same as a new one, so dropping it loses nothing
+        buckets.values().removeIf(b -> b.tokensAt(now) >= BURST);
+        int excess = buckets.size() - MAX_BUCKETS * 3 / 4;
+        if (excess <= 0) return;
+
+        // Least recently used first, among buckets that still have a token
+        List<Map.Entry<String, Long>> open = new ArrayList<>();
+        for (Map.Entry<String, Bucket> e : buckets.entrySet()) {
+            if (e.getValue().tokensAt(now) >= 1) open.add(Map.entry(e.getKey(), e.getValue().lastUsed()));
+        }
+        open.sort(Map.Entry.comparingByValue(Comparator.naturalOrder()));
+        for (int i = 0; i < excess && i < open.size(); i++) {
+            buckets.computeIfPresent(open.get(i).getKey(), (k, b) -> b.tokensAt(System.currentTimeMillis()) >= 1 ? null : b);
+        }
+    }
+
+    private static String key(String username, String terminal) {
+        return (username == null ? "" : username.trim().toLowerCase()) + '\0' + terminal;
+    }
+
+    private static String localTerminal() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "local";
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package service;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+
+// Keeps the owner credentials in memory so a login never touches the disk.
+// The file is loaded once, reloaded by a WatchService when it changes
+// (through updateOwnerCredentials or an external edit) and stored in a small
+// binary layout instead of Java serialization:
+//
+//   int magic | byte version | short nameLen | name (UTF-8) | 16 byte salt | 32 byte SHA-256(salt + password)
+public class OwnerCredentialStore {
+
+    private static final String OWNER_FILE = "owner_config.dat";
+    private static final String LEGACY_FILE = "owner_config.ser"; // Old ObjectOutputStream format
+
+    private static final int MAGIC = 0x4F574E31; // "OWN1"
+    private static final byte VERSION = 1;
+    private static final int SALT_LENGTH = 16;
+
+    private static final String DEFAULT_USERNAME = "owner";
+    private static final String DEFAULT_PASSWORD = "123";
+
+    // Immutable snapshot, swapped as a whole on reload
+    private static final class Snapshot {
+        final String username;
+        final byte[] salt;
+        final byte[] passwordHash;
+
+        Snapshot(String username, byte[] salt, byte[] passwordHash) {
+            this.username = username;
+            this.salt = salt;
+            this.passwordHash = passwordHash;
+        }
+    }
+
+    private static final Path FILE_PATH = Paths.get(OWNER_FILE).toAbsolutePath();
+    private static volatile Snapshot snapshot;
+    private static boolean watcherStarted = false;
+
+    private OwnerCredentialStore() {}
+
+    public static boolean matches(String username, String password) {
+        Snapshot s = current();
+        if (username == null || password == null || !s.username.equals(username)) return false;
+        return MessageDigest.isEqual(s.passwordHash, hash(s.salt, password));
+    }
+
+    // False (and the old credentials stay in force) if the file couldn't be written
+    public static synchronized boolean update(String username, String password) {
+        byte[] salt = new byte[SALT_LENGTH];
+        new SecureRandom().nextBytes(salt);
+        Snapshot s = new Snapshot(username, salt, hash(salt, password));
+        try {
+            write(s);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        snapshot = s;
+        return true;
+    }
+
+    // Loads the credentials now; throws if the file exists but can't be read,
+    // so a damaged file stops startup instead of quietly re-enabling owner/123
+    public static void ensureLoaded() {
+        current();
+    }
+
+    private static Snapshot current() {
+        Snapshot s = snapshot;
+        if (s == null) {
+            synchronized (OwnerCredentialStore.class) {
+                if (snapshot == null) {
+                    try {
+                        snapshot = load();
+                    } catch (IOException e) {
+                        throw new IllegalStateException("Can't read owner credentials from " + FILE_PATH
+                                + "; restore or delete the file", e);
+                    }
+                    startWatcher();
+                }
+                s = snapshot;
+            }
+        }
+        return s;
+    }
+
+    // Defaults only when there is no file at all (first run); a file that exists but
+    // can't be read is an error
+    private static Snapshot load() throws IOException {
+        if (Files.exists(FILE_PATH)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(FILE_PATH)))) {
+                if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+                    throw new IOException("Unrecognised owner credential file: " + FILE_PATH);
+                }
+                byte[] name = new byte[in.readUnsignedShort()];
+                in.readFully(name);
+                byte[] salt = new byte[SALT_LENGTH];
+                in.readFully(salt);
+                byte[] passwordHash = new byte[32];
+                in.readFully(passwordHash);
+                return new Snapshot(new String(name, StandardCharsets.UTF_8), salt, passwordHash);
+            }
+        }
+        Snapshot migrated = migrateLegacyFile();
+        if (migrated != null) return migrated;
+        // First run: default credentials until the owner changes them
+        byte[] salt = new byte[SALT_LENGTH];
+        return new Snapshot(DEFAULT_USERNAME, salt, hash(salt, DEFAULT_PASSWORD));
+    }
+
+    // One-time conversion of the old owner_config.ser written by earlier versions
+    private static Snapshot migrateLegacyFile() throws IOException {
+        File legacy = new File(LEGACY_FILE);
+        if (!legacy.exists()) return null;
+        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(legacy))) {
+            String[] creds = (String[]) ois.readObject();
+            byte[] salt = new byte[SALT_LENGTH];
+            new SecureRandom().nextBytes(salt);
+            Snapshot s = new Snapshot(creds[0], salt, hash(salt, creds[1]));
+            write(s);
+            legacy.delete();
+            return s;
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Unrecognised legacy owner credential file: " + legacy, e);
+        }
+    }
+
+    private static void write(Snapshot s) throws IOException {
+        byte[] name = s.username.getBytes(StandardCharsets.UTF_8);
+        Path tmp = FILE_PATH.resolveSibling(OWNER_FILE + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeShort(name.length);
+            out.write(name);
+            out.write(s.salt);
+            out.write(s.passwordHash);
+        }
+        // Atomic replace so the watcher never sees a half-written file
+        Files.move(tmp, FILE_PATH, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static byte[] hash(byte[] salt, String password) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            md.update(salt);
+            return md.digest(password.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // SHA-256 is always available
+        }
+    }
+
+    // --- File watcher: reloads the snapshot when the credential file changes ---
+    private static void startWatcher() {
+        if (watcherStarted) return;
+        watcherStarted = true;
+        Thread t = new Thread(() -> {
+            try (WatchService watcher = FileSystems.getDefault().newWatchService()) {
+                FILE_PATH.getParent().register(watcher,
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY,
+                        StandardWatchEventKinds.ENTRY_DELETE);
+                while (true) {
+                    WatchKey key = watcher.take();
+                    boolean changed = false;
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        Object context = event.context();
+                        if (context instanceof Path && ((Path) context).toString().equals(OWNER_FILE)) {
+                            changed = true;
+                        }
+                    }
+                    // A deleted or half-written file keeps the credentials already in force
+                    if (changed && Files.exists(FILE_PATH)) {
+                        try {
+                            Snapshot reloaded = load();
+                            synchronized (OwnerCredentialStore.class) {
+                                snapshot = reloaded;
+                            }
+                        } catch (IOException e) {
+                            System.err.println("Owner credential file not reloaded, keeping the current credentials: " + e);
+                        }
+                    }
+                    if (!key.reset()) break;
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "owner-credential-watcher");
+        t.setDaemon(true);
+        t.start();
+    }
+}
@@ -0,0 +1,107 @@
+package service;
+
+import model.AttendanceColumns;
+import model.AttendanceRollup;
+import model.AttendanceStats;
+import repository.AttendanceRepository;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.text.DecimalFormat;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+// Writes the plain-text date range report. Shared by the teacher dashboard,
+// the owner's school-wide export and the command line tool.
+public class ReportWriter {
+
+    private final AttendanceRepository attendanceRepo;
+    private final AttendanceAnalyticsService analyticsService;
+
+    public ReportWriter(AttendanceRepository attendanceRepo) {
+        this.attendanceRepo = attendanceRepo;
+        this.analyticsService = new AttendanceAnalyticsService(attendanceRepo);
+    }
+
+    // Loads the rows itself; returns {records, present} for summaries
+    public int[] writeDateRangeReport(BufferedWriter writer, String subject, String teacherName, LocalDate from, LocalDate to) throws IOException {
+        AttendanceColumns records = attendanceRepo.getColumnsByDateRange(subject, from, to);
+        writeDateRangeReport(writer, subject, teacherName, from, to, records);
+        return new int[]{records.size(), records.presentCount()};
+    }
+
+    // records in the default (subject, student, date) order: the listing is re-ordered by
+    // date in memory and the analytics reuse the same load instead of querying again
+    public void writeDateRangeReport(BufferedWriter writer, String subject, String teacherName, LocalDate from, LocalDate to, AttendanceColumns records) throws IOException {
+        DecimalFormat df = new DecimalFormat("0.00"); // Not thread-safe, so one per report
+        
+        writer.write("====================================================================="); writer.newLine();
+        writer.write("                  ATTENDANCE REPORT (DATE RANGE)"); writer.newLine();
+        writer.write("====================================================================="); writer.newLine();
+        writer.write("Subject: " + subject); writer.newLine();
+        writer.write("Teacher: " + teacherName); writer.newLine();
+        writer.write("Period:  " + from + "  TO  " + to); writer.newLine();
+        writer.write("Generated: " + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"))); writer.newLine();
+        writer.write("====================================================================="); writer.newLine(); writer.newLine();
+        
+        writer.write(String.format("%-15s %-12s %-20s %-10s", "Date", "Student ID", "Subject", "Status")); writer.newLine();
+        writer.write("---------------------------------------------------------------------"); writer.newLine();
+        
+        int presentCount = records.presentCount();
+        
+        AttendanceColumns.View r = records.view();
+        for (int row : records.rowsByDate()) {
+            r.moveTo(row);
+            writer.write(String.format("%-15s %-12s %-20s %-10s", 
+                r.getDate().toString(), 
+                r.getStudentId(), 
+                r.getSubject(), 
+                r.isPresent() ? "Present" : "Absent"
+            ));
+            writer.newLine();
+        }
+        
+        writer.newLine();
+        writer.write("---------------------------------------------------------------------"); writer.newLine();
+        writer.write("SUMMARY:"); writer.newLine();
+        writer.write("Total Records: " + records.size()); writer.newLine();
+        writer.write("Total Present: " + presentCount); writer.newLine();
+        writer.write("Total Absent:  " + (records.size() - presentCount)); writer.newLine();
+        writer.write("====================================================================="); writer.newLine(); writer.newLine();
+        
+        // Day-by-day class totals, from the precomputed rollups
+        writer.write("DAILY SUMMARY:"); writer.newLine();
+        writer.write(String.format("%-15s %-10s %-10s %-10s", "Date", "Present", "Absent", "Rate")); writer.newLine();
+        writer.write("---------------------------------------------------------------------"); writer.newLine();
+        for (AttendanceRollup day : attendanceRepo.getRollups(subject, AttendanceRollup.DAILY, from, to)) {
+            writer.write(String.format("%-15s %-10d %-10d %-10s",
+                day.getPeriodStart().toString(),
+                day.getPresentCount(),
+                day.getAbsentCount(),
+                df.format(day.getRate()) + "%"
+            ));
+            writer.newLine();
+        }
+        writer.write("====================================================================="); writer.newLine(); writer.newLine();
+        
+        // Per-student analytics
+        List<AttendanceStats> stats = analyticsService.analyzeColumns(records, from);
+        writer.write("STUDENT ANALYTICS:"); writer.newLine();
+        writer.write(String.format("%-12s %-8s %-8s %-10s %-15s %-12s", "Student ID", "Rate", "Streak", "Best Run", "Longest Absent", "Trend/30d")); writer.newLine();
+        writer.write("---------------------------------------------------------------------"); writer.newLine();
+        for (AttendanceStats s : stats) {
+            writer.write(String.format("%-12s %-8s %-8d %-10d %-15d %-12s",
+                s.getStudentId(),
+                df.format(s.getPercentage()) + "%",
+                s.getCurrentStreak(),
+                s.getLongestPresentStreak(),
+                s.getLongestAbsenceRun(),
+                (s.getTrendPerMonth() >= 0 ? "+" : "") + df.format(s.getTrendPerMonth()) + "%"
+            ));
+            writer.newLine();
+        }
+        writer.write("=====================================================================");
+    }
+}
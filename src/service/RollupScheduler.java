@@ -0,0 +1,201 @@
+package service;
+
+import model.AttendanceRecord;
+import repository.AttendanceRepository;
+import repository.DatabaseConnection;
+import repository.JobStateRepository;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// Keeps the AttendanceRollup table up to date so dashboards and reports can read
+// per-subject daily/weekly counts instead of scanning attendance rows.
+//
+// Three triggers, all on one background thread:
+//  - after a marking window: saves are collected and the touched days are rolled
+//    up once no new mark has arrived for WINDOW_QUIET_MS;
+//  - nightly at -Dattendance.rollup.nightlyAt=HH:mm (default 02:00), which also
+//    archives closed months (see AttendanceArchiver) while nobody is marking;
+//  - on start, to catch up after downtime.
+// The nightly run and the catch-up re-roll every day touched since the last run,
+// found through the rowversion watermark kept in JobState, so marks made while
+// no client was running (or by another client) are picked up too.
+// With several shards each keeps its own job state and is caught up separately.
+public class RollupScheduler {
+
+    public static final String JOB_NAME = "attendance-rollup";
+    private static final LocalTime DEFAULT_NIGHTLY_AT = LocalTime.of(2, 0);
+    private static final long WINDOW_QUIET_MS = 10_000;
+    private static final long RETRY_AFTER_FAILURE_MS = 15 * 60_000;
+
+    private final AttendanceRepository attendanceRepo;
+    private final JobStateRepository jobStateRepo;
+    private final LocalTime nightlyAt;
+
+    private final Consumer<List<AttendanceRecord>> saveListener = this::onSaved;
+    private final Map<String, LocalDate[]> pending = new HashMap<>(); // Guarded by 'this'
+    private ScheduledExecutorService executor;
+    private ScheduledFuture<?> windowRun;
+
+    public RollupScheduler(AttendanceRepository attendanceRepo) {
+        this(attendanceRepo, new JobStateRepository(),
+                LocalTime.parse(System.getProperty("attendance.rollup.nightlyAt", DEFAULT_NIGHTLY_AT.toString())));
+    }
+
+    public RollupScheduler(AttendanceRepository attendanceRepo, JobStateRepository jobStateRepo, LocalTime nightlyAt) {
+        this.attendanceRepo = attendanceRepo;
+        this.jobStateRepo = jobStateRepo;
+        this.nightlyAt = nightlyAt;
+    }
+
+    public synchronized void start() {
+        if (executor != null) return;
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "rollup-scheduler");
+            t.setDaemon(true);
+            return t;
+        });
+        attendanceRepo.addSaveListener(saveListener);
+        executor.execute(this::runSafely);
+        scheduleNightly();
+    }
+
+    public synchronized void stop() {
+        if (executor == null) return;
+        attendanceRepo.removeSaveListener(saveListener);
+        executor.shutdownNow();
+        executor = null;
+    }
+
+    // Rolls up everything changed since the last run. Also usable without start()
+    // (e.g. from the command line). Returns the number of rollup rows written, or -1
+    // if any shard failed; a failed shard keeps its watermark, so the next run retries it.
+    public int catchUp() {
+        return sumOrFailed(this::catchUpShard);
+    }
+
+    // The watermark only moves once every touched day of the shard was refreshed;
+    // otherwise those days would count as rolled up and never be recomputed
+    private int catchUpShard() {
+        long from = jobStateRepo.getWatermark(JOB_NAME);
+        long upTo = attendanceRepo.getCommittedRowVersion();
+        if (from < 0 || upTo < 0) return -1;
+        Map<String, LocalDate[]> touched = attendanceRepo.getTouchedDateRanges(from, upTo);
+        if (touched == null) return -1;
+        int rows = 0;
+        for (Map.Entry<String, LocalDate[]> e : touched.entrySet()) {
+            int written = attendanceRepo.refreshRollups(e.getKey(), e.getValue()[0], e.getValue()[1]);
+            if (written < 0) return -1;
+            rows += written;
+        }
+        jobStateRepo.advanceWatermark(JOB_NAME, upTo);
+        return rows;
+    }
+
+    // Full recompute, for repairs after rows were deleted or edited by hand
+    public int rebuild() {
+        return sumOrFailed(() -> {
+            long upTo = attendanceRepo.getCommittedRowVersion();
+            if (upTo < 0) return -1;
+            int written = attendanceRepo.refreshRollups(null, LocalDate.of(1900, 1, 1), LocalDate.now());
+            if (written >= 0) jobStateRepo.advanceWatermark(JOB_NAME, upTo);
+            return written;
+        });
+    }
+
+    // Runs the job on every shard, even after one failed; -1 if any did
+    private static int sumOrFailed(Supplier<Integer> perShard) {
+        int rows = 0;
+        boolean failed = false;
+        for (String shard : DatabaseConnection.getShardNames()) {
+            int written = DatabaseConnection.onShard(shard, perShard);
+            if (written < 0) failed = true;
+            else rows += written;
+        }
+        return failed ? -1 : rows;
+    }
+
+    private void runSafely() {
+        try {
+            if (catchUp() < 0) scheduleRetry();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            scheduleRetry();
+        }
+    }
+
+    // A failed run would otherwise wait for the next night (or restart) to be picked up
+    private synchronized void scheduleRetry() {
+        if (executor == null) return;
+        executor.schedule(this::runSafely, RETRY_AFTER_FAILURE_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void scheduleNightly() {
+        if (executor == null) return;
+        LocalDateTime next = LocalDate.now().atTime(nightlyAt);
+        if (!next.isAfter(LocalDateTime.now())) next = next.plusDays(1);
+        long delay = Duration.between(LocalDateTime.now(), next).toMillis();
+        LocalDateTime slot = next;
+        // Re-armed after every run rather than at a fixed rate, so DST changes don't shift it
+        executor.schedule(() -> {
+            // Only one client runs each nightly slot (per shard); the others skip it
+            boolean failed = false;
+            for (String shard : DatabaseConnection.getShardNames()) {
+                failed |= DatabaseConnection.onShard(shard, () -> {
+                    try {
+                        if (jobStateRepo.claimRun(JOB_NAME, slot)) {
+                            new AttendanceArchiver(attendanceRepo).archiveClosedMonths(); // Scoped to this shard
+                            return catchUpShard() < 0;
+                        }
+                    } catch (RuntimeException e) {
+                        e.printStackTrace();
+                        return true;
+                    }
+                    return false;
+                });
+            }
+            // The slot is claimed either way; the unmoved watermark lets the retry pick it up
+            if (failed) scheduleRetry();
+            scheduleNightly();
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void onSaved(List<AttendanceRecord> saved) {
+        if (executor == null) return;
+        for (AttendanceRecord r : saved) {
+            LocalDate[] range = pending.computeIfAbsent(r.getSubject(), k -> new LocalDate[]{r.getDate(), r.getDate()});
+            if (r.getDate().isBefore(range[0])) range[0] = r.getDate();
+            if (r.getDate().isAfter(range[1])) range[1] = r.getDate();
+        }
+        // Debounce: a teacher saving a whole class produces one refresh, not one per student
+        if (windowRun != null) windowRun.cancel(false);
+        windowRun = executor.schedule(this::flushWindow, WINDOW_QUIET_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private void flushWindow() {
+        Map<String, LocalDate[]> batch;
+        synchronized (this) {
+            batch = new HashMap<>(pending);
+            pending.clear();
+            windowRun = null;
+        }
+        try {
+            for (Map.Entry<String, LocalDate[]> e : batch.entrySet()) {
+                attendanceRepo.refreshRollups(e.getKey(), e.getValue()[0], e.getValue()[1]);
+            }
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package service;
+
+import model.Student;
+import model.Teacher;
+import repository.AttendanceRepository;
+import repository.StudentRepository;
+import repository.TeacherRepository;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+// Owner-level export: one date range report per subject, all in a single ZIP.
+// Reports are generated concurrently on virtual threads, each with its own
+// database query; a semaphore bounds how many run against the database at once.
+// Each worker writes to a temp file and the calling thread streams finished
+// reports into the archive in subject order, so zipping overlaps generation.
+// If any report fails, the rest are cancelled, every temp file is removed and
+// the partial ZIP is deleted.
+public class SchoolReportExporter {
+
+    private static final int MAX_CONCURRENT_REPORTS = 4;
+
+    private final AttendanceRepository attendanceRepo;
+    private final StudentRepository studentRepo;
+    private final TeacherRepository teacherRepo;
+    private final ReportWriter reportWriter;
+
+    // Per-subject result, also used for the index
+    public static class SubjectResult {
+        public final String subject;
+        public final String teacher;
+        public final int records;
+        public final int present;
+
+        SubjectResult(String subject, String teacher, int records, int present) {
+            this.subject = subject;
+            this.teacher = teacher;
+            this.records = records;
+            this.present = present;
+        }
+    }
+
+    public SchoolReportExporter(AttendanceRepository attendanceRepo, StudentRepository studentRepo, TeacherRepository teacherRepo) {
+        this.attendanceRepo = attendanceRepo;
+        this.studentRepo = studentRepo;
+        this.teacherRepo = teacherRepo;
+        this.reportWriter = new ReportWriter(attendanceRepo);
+    }
+
+    public List<SubjectResult> exportAll(LocalDate from, LocalDate to, File zipFile) throws IOException {
+        // Subjects taught or studied, with a teacher name where there is one
+        Map<String, String> teacherBySubject = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (Student s : studentRepo.getAll()) teacherBySubject.putIfAbsent(s.getSubject(), "-");
+        for (Teacher t : teacherRepo.getAllTeachers()) {
+            if (teacherBySubject.containsKey(t.getSubject())) teacherBySubject.put(t.getSubject(), t.getUsername());
+        }
+
+        Semaphore permits = new Semaphore(MAX_CONCURRENT_REPORTS);
+        Map<String, Future<Path>> pending = new LinkedHashMap<>();
+        Map<String, int[]> counts = new ConcurrentHashMap<>();
+        List<SubjectResult> results = new ArrayList<>();
+        Set<Path> tempFiles = ConcurrentHashMap.newKeySet();
+        boolean complete = false;
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Map.Entry<String, String> e : teacherBySubject.entrySet()) {
+                String subject = e.getKey();
+                String teacher = e.getValue();
+                pending.put(subject, executor.submit(() -> {
+                    permits.acquire();
+                    try {
+                        Path tmp = Files.createTempFile("report_", ".txt");
+                        tempFiles.add(tmp);
+                        try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                            counts.put(subject, reportWriter.writeDateRangeReport(writer, subject, teacher, from, to));
+                        }
+                        return tmp;
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+
+            try (ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(zipFile)))) {
+                zip.setLevel(6);
+                Set<String> usedNames = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+                for (Map.Entry<String, Future<Path>> e : pending.entrySet()) {
+                    String subject = e.getKey();
+                    Path tmp = await(e.getValue());
+                    try {
+                        zip.putNextEntry(new ZipEntry(fileNameFor(subject, from, to, usedNames)));
+                        Files.copy(tmp, zip);
+                        zip.closeEntry();
+                    } finally {
+                        Files.deleteIfExists(tmp);
+                    }
+                    int[] c = counts.get(subject);
+                    results.add(new SubjectResult(subject, teacherBySubject.get(subject), c[0], c[1]));
+                }
+                writeIndex(zip, results, from, to);
+                complete = true;
+            } finally {
+                // Stop the reports nobody will read; closing the executor waits for them
+                if (!complete) pending.values().forEach(f -> f.cancel(true));
+            }
+        } finally {
+            for (Path tmp : tempFiles) deleteQuietly(tmp);
+            if (!complete) deleteQuietly(zipFile.toPath());
+        }
+        return results;
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static Path await(Future<Path> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Export interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            throw new IOException("Report generation failed: " + cause.getMessage(), cause);
+        }
+    }
+
+    private static void writeIndex(ZipOutputStream zip, List<SubjectResult> results, LocalDate from, LocalDate to) throws IOException {
+        zip.putNextEntry(new ZipEntry("INDEX.txt"));
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(zip, StandardCharsets.UTF_8));
+        writer.write("SCHOOL ATTENDANCE EXPORT  " + from + "  TO  " + to); writer.newLine();
+        writer.write("====================================================================="); writer.newLine();
+        writer.write(String.format("%-20s %-15s %-9s %-9s %-9s %-8s", "Subject", "Teacher", "Records", "Present", "Absent", "Rate")); writer.newLine();
+        writer.write("---------------------------------------------------------------------"); writer.newLine();
+        long totalRecords = 0, totalPresent = 0;
+        for (SubjectResult r : results) {
+            double rate = r.records == 0 ? 0.0 : (double) r.present / r.records * 100.0;
+            writer.write(String.format("%-20s %-15s %-9d %-9d %-9d %6.2f%%", r.subject, r.teacher, r.records, r.present, r.records - r.present, rate));
+            writer.newLine();
+            totalRecords += r.records;
+            totalPresent += r.present;
+        }
+        writer.write("---------------------------------------------------------------------"); writer.newLine();
+        double rate = totalRecords == 0 ? 0.0 : (double) totalPresent / totalRecords * 100.0;
+        writer.write(String.format("%-36s %-9d %-9d %-9d %6.2f%%", "TOTAL (" + results.size() + " subjects)", totalRecords, totalPresent, totalRecords - totalPresent, rate));
+        writer.newLine();
+        writer.flush(); // Do not close: that would close the ZIP stream
+        zip.closeEntry();
+    }
+
+    // Sanitizing can map two subjects to one name ("Math 1", "Math_1"); later ones get a suffix
+    private static String fileNameFor(String subject, LocalDate from, LocalDate to, Set<String> usedNames) {
+        String base = "Report_" + subject.replaceAll("[^A-Za-z0-9_-]", "_");
+        String name = base;
+        for (int n = 2; !usedNames.add(name); n++) name = base + "_" + n;
+        return name + "_" + from + "_to_" + to + ".txt";
+    }
+}
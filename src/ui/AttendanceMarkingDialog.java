@@ -1,13 +1,24 @@
 package ui;
 
 import model.Student;
-import model.AttendanceRecord;
 import repository.AttendanceRepository;
 import javax.swing.*;
+import javax.swing.event.TableModelEvent;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 public class AttendanceMarkingDialog extends JDialog {
     
@@ -17,6 +28,28 @@ public class AttendanceMarkingDialog extends JDialog {
     private AttendanceRepository attendanceRepo;
     private String subject;
     private TeacherDashboardFrame parentFrame;
+    private final LocalDate today = LocalDate.now();
+
+    // --- NEW: Autosave ---
+    // Ticks are coalesced per student and written to a draft session in the background,
+    // FLUSH_DELAY_MS after the first unsaved change (or as soon as FLUSH_AFTER_CHANGES
+    // students are pending). "Save" only flushes what is left and finalizes the draft;
+    // closing the dialog without saving keeps the draft, and it is resumed next time.
+    private static final long FLUSH_DELAY_MS = 300;
+    private static final long RETRY_DELAY_MS = 3_000;
+    private static final int FLUSH_AFTER_CHANGES = 25;
+
+    private final ScheduledExecutorService autosave = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "attendance-autosave");
+        t.setDaemon(true);
+        return t;
+    });
+    private final Map<String, Boolean> pending = new LinkedHashMap<>(); // Guarded by itself
+    private ScheduledFuture<?> scheduledFlush;                        // Guarded by pending
+    private volatile int sessionId = -1;
+    private boolean applyingDraft = false; // EDT only
+    private final Set<String> ticked = new HashSet<>(); // EDT only: rows the user changed
+    private JLabel statusLabel;
 
     public AttendanceMarkingDialog(TeacherDashboardFrame parent, List<Student> students, AttendanceRepository repo, String subject) {
         super(parent, "Mark Attendance - " + LocalDate.now(), true);
@@ -30,6 +63,7 @@ public class AttendanceMarkingDialog extends JDialog {
         setLayout(new BorderLayout(10, 10));
 
         initUI();
+        autosave.execute(this::openDraft);
     }
 
     private void initUI() {
@@ -63,6 +97,14 @@ public class AttendanceMarkingDialog extends JDialog {
             tableModel.addRow(new Object[]{s.getId(), s.getName(), true});
         }
 
+        tableModel.addTableModelListener(e -> {
+            if (applyingDraft || e.getType() != TableModelEvent.UPDATE || e.getColumn() != 2) return;
+            for (int row = e.getFirstRow(); row <= e.getLastRow(); row++) {
+                ticked.add((String) tableModel.getValueAt(row, 0));
+                markChanged((String) tableModel.getValueAt(row, 0), (Boolean) tableModel.getValueAt(row, 2));
+            }
+        });
+
         table = new JTable(tableModel);
         table.setRowHeight(35); // Taller rows for better touch/click
         table.setFont(new Font("Segoe UI", Font.PLAIN, 14));
@@ -105,26 +147,160 @@ public class AttendanceMarkingDialog extends JDialog {
         JPanel btnPanel = new JPanel(new FlowLayout());
         btnPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 20, 10));
         btnPanel.add(saveBtn);
+        statusLabel = new JLabel(" ");
+        statusLabel.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        statusLabel.setForeground(Color.GRAY);
+        btnPanel.add(statusLabel);
         add(btnPanel, BorderLayout.SOUTH);
     }
 
+    // Background: find or create today's draft, then merge it into the table
+    private void openDraft() {
+        int id = attendanceRepo.openDraftSession(subject, today);
+        if (id < 0) {
+            if (attendanceRepo.isMarked(subject, today)) {
+                SwingUtilities.invokeLater(() -> setStatus("Already saved from another terminal"));
+            } else if (!autosave.isShutdown()) {
+                SwingUtilities.invokeLater(() -> setStatus("Autosave unavailable, retrying..."));
+                autosave.schedule(this::openDraft, RETRY_DELAY_MS, TimeUnit.MILLISECONDS);
+            }
+            return;
+        }
+        Map<String, Boolean> saved = attendanceRepo.getSessionMarks(subject, id);
+        sessionId = id;
+        SwingUtilities.invokeLater(() -> {
+            applyingDraft = true;
+            try {
+                for (int i = 0; i < tableModel.getRowCount(); i++) {
+                    String studentId = (String) tableModel.getValueAt(i, 0);
+                    Boolean present = saved.get(studentId);
+                    // Not 'pending': a flush may already have written (and emptied) the tick
+                    if (ticked.contains(studentId)) {
+                        continue; // The user's value is newer than the draft we read
+                    } else if (present != null) {
+                        tableModel.setValueAt(present, i, 2);
+                    } else {
+                        // Not in the draft yet: queue it so finalizing has every student
+                        markChanged(studentId, (Boolean) tableModel.getValueAt(i, 2));
+                    }
+                }
+            } finally {
+                applyingDraft = false;
+            }
+            if (!saved.isEmpty()) setStatus("Resumed unsaved attendance (" + saved.size() + " marks)");
+            flushAfter(FLUSH_DELAY_MS);
+        });
+    }
+
+    private void markChanged(String studentId, Boolean present) {
+        synchronized (pending) {
+            pending.put(studentId, present);
+            if (pending.size() >= FLUSH_AFTER_CHANGES) {
+                flushAfter(0);
+            } else if (scheduledFlush == null) {
+                flushAfter(FLUSH_DELAY_MS);
+            }
+        }
+    }
+
+    private void flushAfter(long delayMs) {
+        synchronized (pending) {
+            if (autosave.isShutdown()) return;
+            if (scheduledFlush != null) {
+                if (delayMs > 0) return; // One is already on its way
+                scheduledFlush.cancel(false);
+            }
+            scheduledFlush = autosave.schedule(this::flush, delayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Autosave thread: writes everything pending as one batch. Returns true when
+    // nothing is left unsaved.
+    private boolean flush() {
+        Map<String, Boolean> batch;
+        synchronized (pending) {
+            scheduledFlush = null;
+            if (sessionId < 0) return pending.isEmpty(); // openDraft() flushes once it has a draft
+            batch = new LinkedHashMap<>(pending);
+            pending.clear();
+        }
+        if (batch.isEmpty()) return true;
+        
+        if (attendanceRepo.saveDraftMarks(subject, sessionId, batch)) {
+            String time = LocalTime.now().format(DateTimeFormatter.ofPattern("HH:mm:ss"));
+            SwingUtilities.invokeLater(() -> setStatus("Autosaved " + time));
+            return true;
+        }
+        synchronized (pending) {
+            // Newer ticks made while we were writing win over the failed batch
+            for (Map.Entry<String, Boolean> e : batch.entrySet()) pending.putIfAbsent(e.getKey(), e.getValue());
+        }
+        SwingUtilities.invokeLater(() -> setStatus("Autosave failed, retrying..."));
+        flushAfter(RETRY_DELAY_MS);
+        return false;
+    }
+
+    private void setStatus(String text) {
+        statusLabel.setText(text);
+    }
+
+    @Override
+    public void dispose() {
+        if (!autosave.isShutdown()) {
+            autosave.execute(this::flush); // Whatever is still pending stays in the draft
+            autosave.shutdown();
+        }
+        super.dispose();
+    }
+
     private void saveAttendance() {
-        int rowCount = tableModel.getRowCount();
-        LocalDate today = LocalDate.now();
+        if (table.isEditing()) table.getCellEditor().stopCellEditing();
+        
+        // Every row as shown now. The draft may not have every student yet (openDraft()
+        // queues the rest through the EDT), so rows missing from it are written before finalizing.
+        Map<String, Boolean> shown = new LinkedHashMap<>();
+        for (int i = 0; i < tableModel.getRowCount(); i++) {
+            shown.put((String) tableModel.getValueAt(i, 0), (Boolean) tableModel.getValueAt(i, 2));
+        }
+        
+        // Runs after any flush already queued (and after openDraft()), so sessionId is settled
+        Map<String, Boolean> saved;
+        try {
+            saved = autosave.submit(() -> {
+                if (!flush() || sessionId < 0) return null;
+                // After the flush the draft holds every tick made here and every kiosk scan, in
+                // the order they were written, so its marks win over the (possibly older) table:
+                // a late scan after an untick stays present, a resumed draft keeps its values
+                Map<String, Boolean> marks = attendanceRepo.getSessionMarks(subject, sessionId);
+                Map<String, Boolean> missing = new LinkedHashMap<>();
+                for (Map.Entry<String, Boolean> e : shown.entrySet()) {
+                    if (!marks.containsKey(e.getKey())) missing.put(e.getKey(), e.getValue());
+                }
+                if (!missing.isEmpty() && !attendanceRepo.saveDraftMarks(subject, sessionId, missing)) return null;
+                marks.putAll(missing);
+                return attendanceRepo.finalizeSession(subject, today, sessionId) ? marks : null;
+            }).get();
+        } catch (InterruptedException | ExecutionException e) {
+            e.printStackTrace();
+            saved = null;
+        }
+        if (saved == null) {
+            JOptionPane.showMessageDialog(this,
+                "Attendance could not be saved. Your marks are kept as a draft; please try again.",
+                "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
         int presentCount = 0;
         int absentCount = 0;
 
-        for (int i = 0; i < rowCount; i++) {
-            String studentId = (String) tableModel.getValueAt(i, 0);
-            Boolean isPresent = (Boolean) tableModel.getValueAt(i, 2);
-
-            // Create record
-            AttendanceRecord record = new AttendanceRecord(studentId, subject, today, isPresent);
-            attendanceRepo.addRecord(record);
-            
+        for (Boolean isPresent : saved.values()) {
             if(isPresent) presentCount++;
             else absentCount++;
         }
+        synchronized (pending) {
+            pending.clear(); // The session is final; a late openDraft() merge has nothing to add
+        }
 
         JOptionPane.showMessageDialog(this, 
             "Attendance Saved!\nPresent: " + presentCount + "\nAbsent: " + absentCount, 
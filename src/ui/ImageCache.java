@@ -0,0 +1,40 @@
+package ui;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Decodes classpath images once and shares them between panels.
+// The startup warm-up calls preload() so the JPEG is already decoded
+// by the time the login window paints.
+public class ImageCache {
+
+    private static final Map<String, CompletableFuture<BufferedImage>> images = new ConcurrentHashMap<>();
+
+    private ImageCache() {}
+
+    public static CompletableFuture<BufferedImage> load(String path) {
+        return images.computeIfAbsent(path, p -> CompletableFuture.supplyAsync(() -> decode(p)));
+    }
+
+    public static void preload(String path) {
+        load(path).join();
+    }
+
+    private static BufferedImage decode(String path) {
+        try (InputStream in = ImageCache.class.getResourceAsStream(path)) {
+            if (in == null) {
+                System.err.println("Image not found: " + path);
+                return null;
+            }
+            return ImageIO.read(in);
+        } catch (IOException e) {
+            System.err.println("Could not decode image: " + path);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package ui;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.*;
+
+// Read-only table model whose rows are identified by one key column.
+// setRows() diffs the new data against what is shown and fires only the
+// matching row-level events (deleted, updated, inserted) instead of a full
+// rebuild, so selection, scroll position and sorting survive a refresh and
+// only changed rows repaint.
+//
+// Existing rows keep their position, changed rows are updated in place and
+// new keys are appended at the end.
+public class KeyedTableModel extends AbstractTableModel {
+
+    private final String[] columns;
+    private final int keyColumn;
+    private final List<Object[]> rows = new ArrayList<>();
+    private final Map<Object, Integer> indexByKey = new HashMap<>();
+
+    public KeyedTableModel(String[] columns, int keyColumn) {
+        this.columns = columns;
+        this.keyColumn = keyColumn;
+    }
+
+    @Override
+    public int getRowCount() { return rows.size(); }
+
+    @Override
+    public int getColumnCount() { return columns.length; }
+
+    @Override
+    public String getColumnName(int column) { return columns[column]; }
+
+    @Override
+    public Object getValueAt(int row, int column) { return rows.get(row)[column]; }
+
+    @Override
+    public boolean isCellEditable(int row, int column) { return false; }
+
+    // EDT only
+    public void setRows(List<Object[]> newRows) {
+        Map<Object, Object[]> incoming = new LinkedHashMap<>();
+        for (Object[] r : newRows) incoming.put(r[keyColumn], r);
+
+        // 1. Deletions, from the bottom so indexes stay valid
+        for (int i = rows.size() - 1; i >= 0; i--) {
+            if (!incoming.containsKey(rows.get(i)[keyColumn])) {
+                int end = i;
+                while (i > 0 && !incoming.containsKey(rows.get(i - 1)[keyColumn])) i--;
+                rows.subList(i, end + 1).clear();
+                fireTableRowsDeleted(i, end);
+            }
+        }
+        reindex();
+
+        // 2. Updates in place, collecting brand new rows
+        int firstNew = rows.size();
+        for (Map.Entry<Object, Object[]> e : incoming.entrySet()) {
+            Integer idx = indexByKey.get(e.getKey());
+            if (idx == null) {
+                rows.add(e.getValue());
+            } else if (!Arrays.equals(rows.get(idx), e.getValue())) {
+                rows.set(idx, e.getValue());
+                fireTableRowsUpdated(idx, idx);
+            }
+        }
+
+        // 3. Insertions, one event for the appended block
+        if (rows.size() > firstNew) {
+            reindex();
+            fireTableRowsInserted(firstNew, rows.size() - 1);
+        }
+    }
+
+    public Object[] getRowByKey(Object key) {
+        Integer idx = indexByKey.get(key);
+        return idx == null ? null : rows.get(idx);
+    }
+
+    private void reindex() {
+        indexByKey.clear();
+        for (int i = 0; i < rows.size(); i++) indexByKey.put(rows.get(i)[keyColumn], i);
+    }
+}
@@ -1,6 +1,7 @@
 package ui;
 
 import service.AuthService;
+import service.LoginRateLimiter;
 import repository.TeacherRepository;
 import repository.StudentRepository;
 import repository.AttendanceRepository;
@@ -18,23 +19,19 @@ import java.util.Optional;
 // CUSTOM BACKGROUND PANEL
 // ----------------------------
 class BackgroundPanel extends JPanel {
-    private Image backgroundImage;
+    // Keeps a pre-scaled copy so repaints are a plain blit instead of a rescale
+    private final ScaledImageCache backgroundImage = new ScaledImageCache(this);
 
     public BackgroundPanel(String imagePath) {
-        try {
-            backgroundImage = new ImageIcon(getClass().getResource(imagePath)).getImage();
-        } catch (Exception e) {
-            System.err.println("Background image not found: " + imagePath);
-        }
+        // Decoded off the EDT (usually already done by the startup warm-up)
+        ImageCache.load(imagePath).thenAccept(img -> SwingUtilities.invokeLater(() -> backgroundImage.setSource(img)));
         setLayout(new GridBagLayout()); 
     }
 
     @Override
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
-        if (backgroundImage != null) {
-            g.drawImage(backgroundImage, 0, 0, getWidth(), getHeight(), this);
-        }
+        backgroundImage.paint(g, getWidth(), getHeight());
     }
 }
 
@@ -249,21 +246,10 @@ public class LoginFrame extends JFrame {
         });
 
         loginButton.addActionListener(e -> {
-            if (isOwner) {
-                if(auth.ownerLogin(ownerUserField.getText(), new String(ownerPassField.getPassword()))){
-                    new OwnerDashboardFrame(teacherRepo, studentRepo, attendanceRepo).setVisible(true);
-                    dispose();
-                } else {
-                    JOptionPane.showMessageDialog(this,"Invalid owner credentials", "Access Denied", JOptionPane.ERROR_MESSAGE);
-                }
-            } else {
-                Optional<Teacher> ot = auth.teacherLogin(teacherUserField.getText(), new String(teacherPassField.getPassword()));
-                if(ot.isPresent()){
-                    new TeacherDashboardFrame(ot.get(), studentRepo, attendanceRepo).setVisible(true);
-                    dispose();
-                } else {
-                    JOptionPane.showMessageDialog(this,"Invalid teacher credentials", "Access Denied", JOptionPane.ERROR_MESSAGE);
-                }
+            try {
+                attemptLogin(isOwner);
+            } catch (LoginRateLimiter.RateLimitedException ex) {
+                JOptionPane.showMessageDialog(this, "Too many login attempts. Please wait " + ex.getRetryAfterSeconds() + " seconds and try again.", "Access Denied", JOptionPane.WARNING_MESSAGE);
             }
         });
 
@@ -273,4 +259,23 @@ public class LoginFrame extends JFrame {
 
         return panel;
     }
+    
+    private void attemptLogin(boolean isOwner) {
+        if (isOwner) {
+            if(auth.ownerLogin(ownerUserField.getText(), new String(ownerPassField.getPassword()))){
+                new OwnerDashboardFrame(teacherRepo, studentRepo, attendanceRepo).setVisible(true);
+                dispose();
+            } else {
+                JOptionPane.showMessageDialog(this,"Invalid owner credentials", "Access Denied", JOptionPane.ERROR_MESSAGE);
+            }
+        } else {
+            Optional<Teacher> ot = auth.teacherLogin(teacherUserField.getText(), new String(teacherPassField.getPassword()));
+            if(ot.isPresent()){
+                new TeacherDashboardFrame(ot.get(), studentRepo, attendanceRepo).setVisible(true);
+                dispose();
+            } else {
+                JOptionPane.showMessageDialog(this,"Invalid teacher credentials", "Access Denied", JOptionPane.ERROR_MESSAGE);
+            }
+        }
+    }
 }
\ No newline at end of file
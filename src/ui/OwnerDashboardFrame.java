@@ -2,12 +2,15 @@ package ui;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import repository.TeacherRepository;
 import repository.StudentRepository;
 import repository.AttendanceRepository;
+import service.AttendanceRankingService;
 import service.AuthService;
+import service.SchoolReportExporter;
+import model.AttendanceRollup;
+import model.AttendanceTotal;
 import model.Teacher;
 import model.Student;
 
@@ -33,8 +36,8 @@ public class OwnerDashboardFrame extends JFrame {
     
     private JTable teacherTable; 
     private JTable studentTable; 
-    private DefaultTableModel teacherTableModel; 
-    private DefaultTableModel studentTableModel; 
+    private KeyedTableModel teacherTableModel; 
+    private KeyedTableModel studentTableModel; 
 
     public OwnerDashboardFrame(TeacherRepository teacherRepo, StudentRepository studentRepo, AttendanceRepository attendanceRepo){ 
         this.teacherRepo = teacherRepo;
@@ -100,6 +103,8 @@ public class OwnerDashboardFrame extends JFrame {
         
         addMenuButton("Teacher Management", "TEACHERS");
         addMenuButton("Student Management", "STUDENTS");
+        addMenuButton("School Reports", "REPORTS");
+        addMenuButton("Attendance Ranking", "RANKING");
         addMenuButton("System Settings", "SETTINGS");
         
         add(sideMenuPanel, BorderLayout.WEST);
@@ -111,6 +116,8 @@ public class OwnerDashboardFrame extends JFrame {
         
         contentPanel.add(createTeacherManagementPanel(), "TEACHERS");
         contentPanel.add(createStudentManagementPanel(), "STUDENTS");
+        contentPanel.add(createSchoolReportsPanel(), "REPORTS");
+        contentPanel.add(createRankingPanel(), "RANKING");
         contentPanel.add(createSettingsPanel(), "SETTINGS");
         
         add(contentPanel, BorderLayout.CENTER);
@@ -145,10 +152,11 @@ public class OwnerDashboardFrame extends JFrame {
     // --- Teacher Panel ---
     public void loadTeacherData() {
         if (teacherTableModel == null) return;
-        teacherTableModel.setRowCount(0); 
+        java.util.List<Object[]> rows = new java.util.ArrayList<>();
         for (Teacher t : teacherRepo.getAllTeachers()) {
-            teacherTableModel.addRow(new Object[]{t.getUsername(), t.getPassword(), t.getSubject()}); 
+            rows.add(new Object[]{t.getUsername(), t.getPassword(), t.getSubject()}); 
         }
+        teacherTableModel.setRows(rows); // Diff-based: only changed rows repaint
     }
     
     private JPanel createTeacherManagementPanel() {
@@ -162,10 +170,7 @@ public class OwnerDashboardFrame extends JFrame {
         panel.add(header, BorderLayout.NORTH);
 
         String[] columns = {"Username", "Password", "Subject"};
-        teacherTableModel = new DefaultTableModel(columns, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) { return false; }
-        };
+        teacherTableModel = new KeyedTableModel(columns, 0);
         teacherTable = new JTable(teacherTableModel);
         setupTable(teacherTable); // Apply table styling
         
@@ -223,10 +228,11 @@ public class OwnerDashboardFrame extends JFrame {
     // --- Student Panel ---
     public void loadStudentData() {
         if (studentTableModel == null) return;
-        studentTableModel.setRowCount(0); 
+        java.util.List<Object[]> rows = new java.util.ArrayList<>();
         for (Student s : studentRepo.getAll()) {
-            studentTableModel.addRow(new Object[]{s.getId(), s.getName(), s.getSubject()}); 
+            rows.add(new Object[]{s.getId(), s.getName(), s.getSubject()}); 
         }
+        studentTableModel.setRows(rows); // Diff-based: only changed rows repaint
     }
 
     private JPanel createStudentManagementPanel() {
@@ -240,10 +246,7 @@ public class OwnerDashboardFrame extends JFrame {
         panel.add(header, BorderLayout.NORTH);
 
         String[] columns = {"ID", "Name", "Subject/Class"};
-        studentTableModel = new DefaultTableModel(columns, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) { return false; }
-        };
+        studentTableModel = new KeyedTableModel(columns, 0);
         studentTable = new JTable(studentTableModel);
         setupTable(studentTable);
         
@@ -300,6 +303,254 @@ public class OwnerDashboardFrame extends JFrame {
         return panel;
     }
     
+    // --- NEW: School-wide export (every subject into one ZIP) ---
+    private JPanel createSchoolReportsPanel() {
+        JPanel panel = new JPanel(new GridBagLayout());
+        panel.setBorder(BorderFactory.createEmptyBorder(30, 60, 30, 60));
+        panel.setBackground(MAIN_BG);
+        
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.insets = new Insets(10, 10, 10, 10);
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        
+        JLabel headerLabel = new JLabel("Export All Subject Reports");
+        headerLabel.setFont(new Font("Segoe UI", Font.BOLD, 24));
+        headerLabel.setForeground(SIDEBAR_BG);
+        headerLabel.setHorizontalAlignment(SwingConstants.CENTER);
+        gbc.gridx = 0; gbc.gridy = 0; gbc.gridwidth = 2;
+        panel.add(headerLabel, gbc);
+        
+        JLabel descLabel = new JLabel("One report per subject plus an index, saved as a single .zip file.");
+        descLabel.setFont(new Font("Segoe UI", Font.PLAIN, 16));
+        descLabel.setHorizontalAlignment(SwingConstants.CENTER);
+        gbc.gridy = 1;
+        panel.add(descLabel, gbc);
+        
+        Font labelFont = new Font("Segoe UI", Font.BOLD, 14);
+        Font fieldFont = new Font("Segoe UI", Font.PLAIN, 14);
+        
+        JLabel startLabel = new JLabel("Start Date (YYYY-MM-DD):"); startLabel.setFont(labelFont);
+        JTextField startField = new JTextField(java.time.LocalDate.now().minusMonths(1).toString(), 15); startField.setFont(fieldFont);
+        JLabel endLabel = new JLabel("End Date (YYYY-MM-DD):"); endLabel.setFont(labelFont);
+        JTextField endField = new JTextField(java.time.LocalDate.now().toString(), 15); endField.setFont(fieldFont);
+        
+        gbc.gridwidth = 1;
+        gbc.gridy = 2; gbc.gridx = 0; panel.add(startLabel, gbc);
+        gbc.gridx = 1; panel.add(startField, gbc);
+        gbc.gridy = 3; gbc.gridx = 0; panel.add(endLabel, gbc);
+        gbc.gridx = 1; panel.add(endField, gbc);
+        
+        JButton exportBtn = new JButton("Export All Subjects (.zip)");
+        styleButton(exportBtn, BTN_BLUE);
+        exportBtn.setPreferredSize(new Dimension(260, 45));
+        
+        exportBtn.addActionListener(e -> {
+            java.time.LocalDate from, to;
+            try {
+                from = java.time.LocalDate.parse(startField.getText().trim());
+                to = java.time.LocalDate.parse(endField.getText().trim());
+            } catch (Exception ex) {
+                JOptionPane.showMessageDialog(this, "Invalid Date Format! Use YYYY-MM-DD (e.g. 2023-10-01)", "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            if (from.isAfter(to)) {
+                JOptionPane.showMessageDialog(this, "Start Date cannot be after End Date!", "Date Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            
+            JFileChooser fileChooser = new JFileChooser();
+            fileChooser.setDialogTitle("Save School Export As");
+            fileChooser.setSelectedFile(new java.io.File("School_Reports_" + from + "_to_" + to + ".zip"));
+            if (fileChooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+            java.io.File chosen = fileChooser.getSelectedFile();
+            java.io.File zipFile = chosen.getName().toLowerCase().endsWith(".zip") ? chosen : new java.io.File(chosen.getAbsolutePath() + ".zip");
+            
+            exportBtn.setEnabled(false);
+            setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+            new Thread(() -> {
+                try {
+                    java.util.List<SchoolReportExporter.SubjectResult> results =
+                            new SchoolReportExporter(attendanceRepo, studentRepo, teacherRepo).exportAll(from, to, zipFile);
+                    SwingUtilities.invokeLater(() -> {
+                        setCursor(Cursor.getDefaultCursor());
+                        exportBtn.setEnabled(true);
+                        JOptionPane.showMessageDialog(this, "Exported " + results.size() + " subject reports to:\n" + zipFile.getAbsolutePath(), "Success", JOptionPane.INFORMATION_MESSAGE);
+                    });
+                } catch (java.io.IOException | RuntimeException ex) {
+                    ex.printStackTrace();
+                    SwingUtilities.invokeLater(() -> {
+                        setCursor(Cursor.getDefaultCursor());
+                        exportBtn.setEnabled(true);
+                        JOptionPane.showMessageDialog(this, "Error saving file: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                    });
+                }
+            }).start();
+        });
+        
+        gbc.gridy = 4; gbc.gridx = 0; gbc.gridwidth = 2; gbc.anchor = GridBagConstraints.CENTER;
+        gbc.fill = GridBagConstraints.NONE;
+        gbc.insets = new Insets(25, 10, 10, 10);
+        panel.add(exportBtn, gbc);
+        
+        // Per-subject totals for the range, read from the precomputed daily rollups
+        String[] columns = {"Subject", "Present", "Absent", "Rate (%)"};
+        KeyedTableModel overviewModel = new KeyedTableModel(columns, 0);
+        JTable overviewTable = new JTable(overviewModel);
+        setupTable(overviewTable);
+        JScrollPane overviewScroll = new JScrollPane(overviewTable);
+        overviewScroll.setPreferredSize(new Dimension(500, 220));
+        
+        JButton overviewBtn = new JButton("Show Subject Overview");
+        styleButton(overviewBtn, BTN_GREEN);
+        overviewBtn.setPreferredSize(new Dimension(260, 40));
+        overviewBtn.addActionListener(e -> {
+            java.time.LocalDate from, to;
+            try {
+                from = java.time.LocalDate.parse(startField.getText().trim());
+                to = java.time.LocalDate.parse(endField.getText().trim());
+            } catch (Exception ex) {
+                JOptionPane.showMessageDialog(this, "Invalid Date Format! Use YYYY-MM-DD (e.g. 2023-10-01)", "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            new Thread(() -> {
+                java.util.Map<String, int[]> totals = new java.util.TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+                for (AttendanceRollup day : attendanceRepo.getRollups(null, AttendanceRollup.DAILY, from, to)) {
+                    int[] t = totals.computeIfAbsent(day.getSubject(), k -> new int[2]);
+                    t[0] += day.getPresentCount();
+                    t[1] += day.getAbsentCount();
+                }
+                java.util.List<Object[]> rows = new java.util.ArrayList<>();
+                for (java.util.Map.Entry<String, int[]> t : totals.entrySet()) {
+                    int total = t.getValue()[0] + t.getValue()[1];
+                    double rate = total == 0 ? 0.0 : (double) t.getValue()[0] / total * 100.0;
+                    rows.add(new Object[]{t.getKey(), t.getValue()[0], t.getValue()[1], String.format("%.2f", rate)});
+                }
+                SwingUtilities.invokeLater(() -> overviewModel.setRows(rows));
+            }).start();
+        });
+        
+        gbc.gridy = 5;
+        gbc.insets = new Insets(10, 10, 10, 10);
+        panel.add(overviewBtn, gbc);
+        
+        gbc.gridy = 6; gbc.fill = GridBagConstraints.BOTH;
+        panel.add(overviewScroll, gbc);
+        
+        return panel;
+    }
+    
+    // --- NEW: Lowest-attendance ranking across all subjects or per subject ---
+    private static final String ALL_SUBJECTS = "All Subjects";
+    
+    private JPanel createRankingPanel() {
+        JPanel panel = new JPanel(new BorderLayout(10, 10));
+        panel.setBorder(BorderFactory.createEmptyBorder(25, 25, 25, 25));
+        panel.setBackground(MAIN_BG);
+        
+        JPanel top = new JPanel(new BorderLayout(5, 5));
+        top.setOpaque(false);
+        JLabel header = new JLabel("Lowest Attendance Ranking");
+        header.setFont(new Font("Segoe UI", Font.BOLD, 24));
+        header.setForeground(SIDEBAR_BG);
+        top.add(header, BorderLayout.NORTH);
+        
+        // Filters
+        JPanel filterPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 8, 5));
+        filterPanel.setOpaque(false);
+        JComboBox<String> subjectBox = new JComboBox<>();
+        subjectBox.addItem(ALL_SUBJECTS);
+        java.util.Set<String> subjects = new java.util.TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        for (Student s : studentRepo.getAll()) subjects.add(s.getSubject());
+        for (String s : subjects) subjectBox.addItem(s);
+        JTextField startField = new JTextField(java.time.LocalDate.now().minusMonths(1).toString(), 9);
+        JTextField endField = new JTextField(java.time.LocalDate.now().toString(), 9);
+        JSpinner minSessions = new JSpinner(new SpinnerNumberModel(5, 1, 1000, 1));
+        JComboBox<Integer> pageSizeBox = new JComboBox<>(new Integer[]{10, 25, 50, 100});
+        JButton showBtn = new JButton("Show");
+        styleButton(showBtn, BTN_BLUE);
+        
+        filterPanel.add(new JLabel("Subject:")); filterPanel.add(subjectBox);
+        filterPanel.add(new JLabel("From:")); filterPanel.add(startField);
+        filterPanel.add(new JLabel("To:")); filterPanel.add(endField);
+        filterPanel.add(new JLabel("Min sessions:")); filterPanel.add(minSessions);
+        filterPanel.add(new JLabel("Show:")); filterPanel.add(pageSizeBox);
+        filterPanel.add(showBtn);
+        top.add(filterPanel, BorderLayout.CENTER);
+        panel.add(top, BorderLayout.NORTH);
+        
+        String[] columns = {"Rank", "Student ID", "Name", "Subject", "Present", "Sessions", "Rate (%)"};
+        KeyedTableModel rankingModel = new KeyedTableModel(columns, 1);
+        JTable rankingTable = new JTable(rankingModel);
+        setupTable(rankingTable);
+        panel.add(new JScrollPane(rankingTable), BorderLayout.CENTER);
+        
+        // Paging
+        JPanel pagePanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 15, 10));
+        pagePanel.setBackground(MAIN_BG);
+        JLabel pageLabel = new JLabel(" ");
+        pageLabel.setFont(new Font("Segoe UI", Font.PLAIN, 14));
+        JButton prevBtn = new JButton("< Previous");
+        JButton nextBtn = new JButton("Next >");
+        styleButton(prevBtn, BTN_BLUE);
+        styleButton(nextBtn, BTN_BLUE);
+        prevBtn.setEnabled(false);
+        nextBtn.setEnabled(false);
+        pagePanel.add(pageLabel);
+        pagePanel.add(prevBtn);
+        pagePanel.add(nextBtn);
+        panel.add(pagePanel, BorderLayout.SOUTH);
+        
+        AttendanceRankingService rankingService = new AttendanceRankingService(attendanceRepo);
+        int[] currentPage = {0};
+        
+        Runnable load = () -> {
+            java.time.LocalDate from, to;
+            try {
+                from = java.time.LocalDate.parse(startField.getText().trim());
+                to = java.time.LocalDate.parse(endField.getText().trim());
+            } catch (Exception ex) {
+                JOptionPane.showMessageDialog(this, "Invalid Date Format! Use YYYY-MM-DD (e.g. 2023-10-01)", "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            String subject = ALL_SUBJECTS.equals(subjectBox.getSelectedItem()) ? null : (String) subjectBox.getSelectedItem();
+            int min = (Integer) minSessions.getValue();
+            int pageSize = (Integer) pageSizeBox.getSelectedItem();
+            int page = currentPage[0];
+            
+            showBtn.setEnabled(false);
+            prevBtn.setEnabled(false);
+            nextBtn.setEnabled(false);
+            setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+            new Thread(() -> {
+                AttendanceRankingService.Page result = rankingService.lowest(subject, from, to, min, page, pageSize);
+                java.util.Map<String, String> names = new java.util.HashMap<>();
+                for (Student s : studentRepo.getAll()) names.put(s.getId(), s.getName());
+                
+                java.util.List<Object[]> rows = new java.util.ArrayList<>();
+                int rank = result.firstRank;
+                for (AttendanceTotal t : result.rows) {
+                    rows.add(new Object[]{rank++, t.getStudentId(), names.getOrDefault(t.getStudentId(), "-"), t.getSubject(),
+                            t.getPresentCount(), t.getTotalSessions(), String.format("%.2f", t.getPercentage())});
+                }
+                SwingUtilities.invokeLater(() -> {
+                    setCursor(Cursor.getDefaultCursor());
+                    rankingModel.setRows(rows);
+                    pageLabel.setText(result.matched == 0 ? "No students match the filters."
+                            : "Ranks " + result.firstRank + "-" + (result.firstRank + result.rows.size() - 1) + " of " + result.matched + " students");
+                    showBtn.setEnabled(true);
+                    prevBtn.setEnabled(page > 0);
+                    nextBtn.setEnabled(result.hasNext);
+                });
+            }).start();
+        };
+        
+        showBtn.addActionListener(e -> { currentPage[0] = 0; load.run(); });
+        prevBtn.addActionListener(e -> { currentPage[0]--; load.run(); });
+        nextBtn.addActionListener(e -> { currentPage[0]++; load.run(); });
+        
+        return panel;
+    }
+    
     private JPanel createSettingsPanel() {
         JPanel panel = new JPanel(new GridBagLayout());
         panel.setBorder(BorderFactory.createEmptyBorder(30, 60, 30, 60));
@@ -350,7 +601,9 @@ public class OwnerDashboardFrame extends JFrame {
                 JOptionPane.showMessageDialog(this, "Empty fields!", "Error", JOptionPane.ERROR_MESSAGE); return;
             }
             AuthService auth = new AuthService(teacherRepo, studentRepo);
-            auth.updateOwnerCredentials(newUser, newPass);
+            if (!auth.updateOwnerCredentials(newUser, newPass)) {
+                JOptionPane.showMessageDialog(this, "Could not save the new credentials. The old ones are still in use.", "Error", JOptionPane.ERROR_MESSAGE); return;
+            }
             JOptionPane.showMessageDialog(this, "Credentials updated! Please login again.");
             userField.setText(""); passField.setText(""); confirmField.setText("");
         });
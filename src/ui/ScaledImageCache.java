@@ -0,0 +1,124 @@
+package ui;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Paints an image stretched to a component without rescaling it on every repaint.
+// The scaled copy is a screen-compatible BufferedImage (so Java2D can keep it in
+// video memory) and is rebuilt on a background thread when the size changes.
+// Until the new copy is ready the old one is stretched, which is cheap.
+// Scaled copies are shared: two panels showing the same image at the same size
+// use one buffer.
+public class ScaledImageCache {
+
+    private static final int SHARED_ENTRIES = 4;
+
+    private static final ExecutorService scaler = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "image-scaler");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Small LRU of recent scaled copies, keyed by source image and size
+    private static final Map<Key, BufferedImage> shared = new LinkedHashMap<>(8, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, BufferedImage> eldest) {
+            return size() > SHARED_ENTRIES;
+        }
+    };
+
+    private final JComponent owner;
+    private BufferedImage source;
+    private BufferedImage scaled;
+    private int pendingWidth = -1;
+    private int pendingHeight = -1;
+
+    public ScaledImageCache(JComponent owner) {
+        this.owner = owner;
+    }
+
+    // EDT only
+    public void setSource(BufferedImage image) {
+        source = image;
+        scaled = null;
+        pendingWidth = pendingHeight = -1;
+        owner.repaint();
+    }
+
+    // EDT only: called from paintComponent
+    public void paint(Graphics g, int width, int height) {
+        if (source == null || width <= 0 || height <= 0) return;
+
+        if (scaled != null && scaled.getWidth() == width && scaled.getHeight() == height) {
+            g.drawImage(scaled, 0, 0, null);
+            return;
+        }
+
+        BufferedImage ready = lookup(source, width, height);
+        if (ready != null) {
+            scaled = ready;
+            g.drawImage(scaled, 0, 0, null);
+            return;
+        }
+
+        // Stretch whatever we have for now and rebuild in the background
+        g.drawImage(scaled != null ? scaled : source, 0, 0, width, height, null);
+        requestScale(width, height);
+    }
+
+    private void requestScale(int width, int height) {
+        if (width == pendingWidth && height == pendingHeight) return;
+        pendingWidth = width;
+        pendingHeight = height;
+
+        BufferedImage src = source;
+        GraphicsConfiguration gc = owner.getGraphicsConfiguration();
+        scaler.execute(() -> {
+            BufferedImage result = scale(src, width, height, gc);
+            synchronized (shared) {
+                shared.put(key(src, width, height), result);
+            }
+            SwingUtilities.invokeLater(() -> {
+                // Ignore results for a size or image we have moved on from
+                if (src == source && width == pendingWidth && height == pendingHeight) {
+                    scaled = result;
+                    pendingWidth = pendingHeight = -1;
+                    owner.repaint();
+                }
+            });
+        });
+    }
+
+    private static BufferedImage scale(BufferedImage src, int width, int height, GraphicsConfiguration gc) {
+        BufferedImage out = gc != null
+                ? gc.createCompatibleImage(width, height, src.getTransparency())
+                : new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2 = out.createGraphics();
+        try {
+            g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g2.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g2.drawImage(src, 0, 0, width, height, null);
+        } finally {
+            g2.dispose();
+        }
+        return out;
+    }
+
+    private static BufferedImage lookup(BufferedImage src, int width, int height) {
+        synchronized (shared) {
+            return shared.get(key(src, width, height));
+        }
+    }
+
+    private static Key key(BufferedImage src, int width, int height) {
+        return new Key(src, width, height);
+    }
+
+    // BufferedImage uses identity equality, so this keys on the exact source instance
+    private record Key(BufferedImage source, int width, int height) {}
+}
@@ -95,7 +95,10 @@ public class StudentFormDialog extends JDialog {
             JOptionPane.showMessageDialog(this, "Student " + name + " added successfully!");
         } else {
             // Edit mode (ID is not changed)
-            repo.editStudent(studentToEdit.getId(), newStudent);
+            if (!repo.editStudent(studentToEdit.getId(), newStudent)) {
+                JOptionPane.showMessageDialog(this, "Student could not be updated. A student can't be moved to a subject kept in a different database.", "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
             JOptionPane.showMessageDialog(this, "Student " + name + " updated successfully!");
         }
         
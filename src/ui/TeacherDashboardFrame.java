@@ -2,22 +2,26 @@ package ui;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
-import javax.swing.table.DefaultTableModel;
 import javax.swing.table.TableRowSorter;
 import java.awt.*;
 import java.io.*;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.text.DecimalFormat;
 
 import model.Teacher;
 import model.Student;
-import model.AttendanceRecord;
+import model.AttendanceColumns;
+import model.AttendanceAlert;
 import repository.StudentRepository;
 import repository.AttendanceRepository;
+import service.AttendanceAlertService;
+import service.AttendanceRangeIndex;
+import service.AttendanceSyncState;
+import service.DashboardSnapshot;
+import service.ReportWriter;
 
 public class TeacherDashboardFrame extends JFrame {
     
@@ -34,28 +38,50 @@ public class TeacherDashboardFrame extends JFrame {
     private Teacher teacher; 
     private StudentRepository studentRepo; 
     private AttendanceRepository attendanceRepo; 
+    private ReportWriter reportWriter;
+    
+    // Delta sync: refresh and polling only fetch rows added or edited since the last look
+    private static final int SYNC_INTERVAL_MS = 30_000;
+    private AttendanceSyncState syncState;
+    private Timer syncTimer;
+    private final java.util.concurrent.atomic.AtomicBoolean syncRunning = new java.util.concurrent.atomic.AtomicBoolean(false);
+    private volatile boolean syncAgain = false;
     
     private JPanel sideMenuPanel;
     private JPanel contentPanel;
     private CardLayout cardLayout;
 
     private JTable classManagementTable;
-    private DefaultTableModel classManagementTableModel;
+    private KeyedTableModel classManagementTableModel;
     private JTable attendanceTable; 
-    private DefaultTableModel attendanceTableModel; 
+    private KeyedTableModel attendanceTableModel; 
     
-    private TableRowSorter<DefaultTableModel> studentSorter;
+    private TableRowSorter<KeyedTableModel> studentSorter;
 
     private static final DecimalFormat df = new DecimalFormat("0.00"); 
     
     // Report Input Fields
     private JTextField startDateField;
     private JTextField endDateField;
+    
+    // Live range statistics on the Reports card
+    private volatile AttendanceRangeIndex rangeIndex;
+    private volatile boolean disposed = false;
+    private KeyedTableModel rangeTableModel;
+    private JLabel rangeSummaryLabel;
+    
+    // Threshold crossings, raised as marks are saved
+    private AttendanceAlertService alertService;
+    private javax.swing.table.DefaultTableModel alertTableModel;
+    private final java.util.function.Consumer<AttendanceAlert> alertListener = this::onAlert;
 
     public TeacherDashboardFrame(Teacher t, StudentRepository studentRepo, AttendanceRepository attendanceRepo){ 
         this.teacher = t;
         this.studentRepo = studentRepo;
         this.attendanceRepo = attendanceRepo;
+        this.reportWriter = new ReportWriter(attendanceRepo);
+        this.syncState = new AttendanceSyncState(attendanceRepo, t.getSubject());
+        this.alertService = new AttendanceAlertService(attendanceRepo);
         
         setTitle("Teacher Dashboard - Class: " + t.getSubject());
         setSize(1000, 700);
@@ -63,6 +89,24 @@ public class TeacherDashboardFrame extends JFrame {
         setLocationRelativeTo(null);
         
         initUI();
+        
+        alertService.addAlertListener(alertListener);
+        alertService.start();
+        
+        syncTimer = new Timer(SYNC_INTERVAL_MS, e -> loadAttendancePercentageData());
+        syncTimer.start();
+    }
+    
+    @Override
+    public void dispose() {
+        disposed = true;
+        if (rangeIndex != null) rangeIndex.close();
+        if (syncTimer != null) syncTimer.stop();
+        if (alertService != null) {
+            alertService.stop();
+            alertService.removeAlertListener(alertListener);
+        }
+        super.dispose();
     }
     
     private void initUI() {
@@ -114,6 +158,7 @@ public class TeacherDashboardFrame extends JFrame {
         addMenuButton("Attendance", "ATTENDANCE");
         addMenuButton("Class Management", "CLASS");
         addMenuButton("Reports", "REPORTS");
+        addMenuButton("Alerts", "ALERTS");
         
         add(sideMenuPanel, BorderLayout.WEST);
         
@@ -125,6 +170,7 @@ public class TeacherDashboardFrame extends JFrame {
         contentPanel.add(createAttendancePanel(), "ATTENDANCE");
         contentPanel.add(createClassManagementPanel(), "CLASS");
         contentPanel.add(createReportsPanel(), "REPORTS");
+        contentPanel.add(createAlertsPanel(), "ALERTS");
 
         add(contentPanel, BorderLayout.CENTER);
     }
@@ -196,10 +242,7 @@ public class TeacherDashboardFrame extends JFrame {
         panel.add(header, BorderLayout.NORTH);
 
         String[] columns = {"ID", "Student Name", "Attendance Percentage"};
-        attendanceTableModel = new DefaultTableModel(columns, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) { return false; }
-        };
+        attendanceTableModel = new KeyedTableModel(columns, 0);
         attendanceTable = new JTable(attendanceTableModel);
         setupTable(attendanceTable);
         
@@ -221,17 +264,15 @@ public class TeacherDashboardFrame extends JFrame {
         bottomPanel.add(refreshBtn);
         panel.add(bottomPanel, BorderLayout.SOUTH);
         
-        loadAttendancePercentageData(); 
+        showSnapshot(); // Instant data from the local snapshot, if there is one
+        loadAttendancePercentageData(); // Then reconcile with the database in the background
         return panel;
     }
 
     private void markAttendance() {
         String subject = teacher.getSubject();
         LocalDate today = LocalDate.now();
-        boolean alreadyMarked = attendanceRepo.getAllRecords().stream()
-            .anyMatch(r -> r.getSubject().equalsIgnoreCase(subject) && r.getDate().equals(today));
-            
-        if (alreadyMarked) {
+        if (attendanceRepo.isMarked(subject, today)) {
             JOptionPane.showMessageDialog(this, "Attendance has already been marked for today.", "Warning", JOptionPane.WARNING_MESSAGE);
             return;
         }
@@ -274,10 +315,7 @@ public class TeacherDashboardFrame extends JFrame {
         panel.add(topContainer, BorderLayout.NORTH);
 
         String[] columns = {"ID", "Name", "Subject/Class"};
-        classManagementTableModel = new DefaultTableModel(columns, 0) { 
-            @Override
-            public boolean isCellEditable(int row, int column) { return false; }
-        };
+        classManagementTableModel = new KeyedTableModel(columns, 0);
         classManagementTable = new JTable(classManagementTableModel); 
         setupTable(classManagementTable);
         
@@ -393,9 +431,72 @@ public class TeacherDashboardFrame extends JFrame {
         gbc.gridy = 3; gbc.insets = new Insets(20, 10, 10, 10);
         panel.add(generateBtn, gbc);
         
+        // --- NEW: Live range statistics (served from the prefix-sum index, no DB scan) ---
+        rangeSummaryLabel = new JLabel("Loading range statistics...");
+        rangeSummaryLabel.setFont(new Font("Segoe UI", Font.BOLD, 14));
+        rangeSummaryLabel.setForeground(SIDEBAR_BG);
+        gbc.gridy = 4; gbc.insets = new Insets(10, 10, 5, 10);
+        panel.add(rangeSummaryLabel, gbc);
+        
+        String[] columns = {"ID", "Student Name", "Present", "Sessions", "Range %"};
+        rangeTableModel = new KeyedTableModel(columns, 0);
+        JTable rangeTable = new JTable(rangeTableModel);
+        setupTable(rangeTable);
+        gbc.gridy = 5; gbc.weightx = 1.0; gbc.weighty = 1.0; gbc.fill = GridBagConstraints.BOTH;
+        panel.add(new JScrollPane(rangeTable), gbc);
+        
+        javax.swing.event.DocumentListener rangeListener = new javax.swing.event.DocumentListener() {
+            public void insertUpdate(javax.swing.event.DocumentEvent e) { updateRangeStatistics(); }
+            public void removeUpdate(javax.swing.event.DocumentEvent e) { updateRangeStatistics(); }
+            public void changedUpdate(javax.swing.event.DocumentEvent e) { updateRangeStatistics(); }
+        };
+        startDateField.getDocument().addDocumentListener(rangeListener);
+        endDateField.getDocument().addDocumentListener(rangeListener);
+        
+        // Build the index once in the background, then show the default range
+        new Thread(() -> {
+            AttendanceRangeIndex index = AttendanceRangeIndex.open(attendanceRepo, teacher.getSubject());
+            rangeIndex = index;
+            if (disposed) {
+                index.close(); // Window closed while the index was being built
+                return;
+            }
+            SwingUtilities.invokeLater(this::updateRangeStatistics);
+        }).start();
+        
         return panel;
     }
     
+    // Recomputes the range table from the index whenever the dates change
+    private void updateRangeStatistics() {
+        if (rangeIndex == null || rangeTableModel == null) return;
+        LocalDate from, to;
+        try {
+            from = LocalDate.parse(startDateField.getText().trim());
+            to = LocalDate.parse(endDateField.getText().trim());
+        } catch (Exception e) {
+            rangeSummaryLabel.setText("Enter valid dates to see range statistics.");
+            return;
+        }
+        if (from.isAfter(to)) {
+            rangeSummaryLabel.setText("Start Date cannot be after End Date!");
+            return;
+        }
+        
+        List<Object[]> rows = new ArrayList<>();
+        long classPresent = 0, classTotal = 0;
+        for (Student s : getStudentsForClass()) {
+            int[] counts = rangeIndex.getRangeCounts(s.getId(), from, to);
+            double percentage = counts[1] == 0 ? 0.0 : (double) counts[0] / counts[1] * 100.0;
+            rows.add(new Object[]{s.getId(), s.getName(), counts[0], counts[1], df.format(percentage) + "%"});
+            classPresent += counts[0];
+            classTotal += counts[1];
+        }
+        rangeTableModel.setRows(rows);
+        double classPercentage = classTotal == 0 ? 0.0 : (double) classPresent / classTotal * 100.0;
+        rangeSummaryLabel.setText("Class attendance " + from + " to " + to + ": " + df.format(classPercentage) + "%");
+    }
+    
     // --- UPDATED: Generate Report Logic ---
     private void generateDateRangeReport() {
         String startStr = startDateField.getText().trim();
@@ -420,10 +521,10 @@ public class TeacherDashboardFrame extends JFrame {
         final LocalDate finalStart = startDate;
         final LocalDate finalEnd = endDate;
 
-        // 2. Fetch Data
-        List<AttendanceRecord> records = attendanceRepo.getRecordsByDateRange(teacher.getSubject(), startDate, endDate);
+        // 2. Fetch Data (columnar: no record object per row)
+        AttendanceColumns records = attendanceRepo.getColumnsByDateRange(teacher.getSubject(), startDate, endDate);
         
-        if (records.isEmpty()) {
+        if (records.size() == 0) {
             JOptionPane.showMessageDialog(this, "No records found for this date range.", "Info", JOptionPane.INFORMATION_MESSAGE);
             return;
         }
@@ -447,38 +548,7 @@ public class TeacherDashboardFrame extends JFrame {
 
             new Thread(() -> {
                 try (BufferedWriter writer = new BufferedWriter(new FileWriter(finalFile))) {
-                    writer.write("====================================================================="); writer.newLine();
-                    writer.write("                  ATTENDANCE REPORT (DATE RANGE)"); writer.newLine();
-                    writer.write("====================================================================="); writer.newLine();
-                    writer.write("Subject: " + teacher.getSubject()); writer.newLine();
-                    writer.write("Teacher: " + teacher.getUsername()); writer.newLine();
-                    writer.write("Period:  " + finalStart + "  TO  " + finalEnd); writer.newLine();
-                    writer.write("Generated: " + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"))); writer.newLine();
-                    writer.write("====================================================================="); writer.newLine(); writer.newLine();
-                    
-                    writer.write(String.format("%-15s %-12s %-20s %-10s", "Date", "Student ID", "Subject", "Status")); writer.newLine();
-                    writer.write("---------------------------------------------------------------------"); writer.newLine();
-                    
-                    int presentCount = 0;
-                    
-                    for (AttendanceRecord r : records) {
-                        if(r.isPresent()) presentCount++;
-                        writer.write(String.format("%-15s %-12s %-20s %-10s", 
-                            r.getDate().toString(), 
-                            r.getStudentId(), 
-                            r.getSubject(), 
-                            r.isPresent() ? "Present" : "Absent"
-                        ));
-                        writer.newLine();
-                    }
-                    
-                    writer.newLine();
-                    writer.write("---------------------------------------------------------------------"); writer.newLine();
-                    writer.write("SUMMARY:"); writer.newLine();
-                    writer.write("Total Records: " + records.size()); writer.newLine();
-                    writer.write("Total Present: " + presentCount); writer.newLine();
-                    writer.write("Total Absent:  " + (records.size() - presentCount)); writer.newLine();
-                    writer.write("=====================================================================");
+                    reportWriter.writeDateRangeReport(writer, teacher.getSubject(), teacher.getUsername(), finalStart, finalEnd, records);
                     
                     SwingUtilities.invokeLater(() -> {
                         setCursor(Cursor.getDefaultCursor()); 
@@ -495,6 +565,52 @@ public class TeacherDashboardFrame extends JFrame {
         }
     }
 
+    // --- NEW: Low-attendance alerts ---
+    private JPanel createAlertsPanel() {
+        JPanel panel = new JPanel(new BorderLayout(10, 10));
+        panel.setBorder(BorderFactory.createEmptyBorder(25, 25, 25, 25));
+        panel.setBackground(MAIN_BG);
+
+        JLabel header = new JLabel("Attendance Alerts (threshold " + df.format(alertService.getThreshold()) + "%)");
+        header.setFont(new Font("Segoe UI", Font.BOLD, 24));
+        header.setForeground(SIDEBAR_BG);
+        panel.add(header, BorderLayout.NORTH);
+
+        String[] columns = {"Time", "Student ID", "Event", "Attendance", "Mark Date"};
+        alertTableModel = new javax.swing.table.DefaultTableModel(columns, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) { return false; }
+        };
+        for (AttendanceAlert a : alertService.getAlerts(teacher.getSubject())) {
+            alertTableModel.addRow(alertRow(a));
+        }
+        JTable alertTable = new JTable(alertTableModel);
+        setupTable(alertTable);
+        panel.add(new JScrollPane(alertTable), BorderLayout.CENTER);
+        
+        JLabel hint = new JLabel("New alerts appear here as attendance is saved. All alerts are also written to attendance_alerts.log.");
+        hint.setFont(new Font("Segoe UI", Font.PLAIN, 14));
+        panel.add(hint, BorderLayout.SOUTH);
+        return panel;
+    }
+    
+    private Object[] alertRow(AttendanceAlert a) {
+        return new Object[]{
+            a.getRaisedAt().withNano(0).toString().replace('T', ' '),
+            a.getStudentId(),
+            a.isFellBelow() ? "Fell below threshold" : "Recovered",
+            df.format(a.getPercentage()) + "%",
+            a.getMarkDate().toString()
+        };
+    }
+    
+    private void onAlert(AttendanceAlert a) {
+        if (!a.getSubject().equalsIgnoreCase(teacher.getSubject())) return;
+        SwingUtilities.invokeLater(() -> {
+            if (alertTableModel != null) alertTableModel.insertRow(0, alertRow(a));
+        });
+    }
+
     private void setupTable(JTable table) {
         table.setRowHeight(35);
         table.setFont(new Font("Segoe UI", Font.PLAIN, 15));
@@ -513,21 +629,72 @@ public class TeacherDashboardFrame extends JFrame {
     
     public void loadClassManagementData() {
         if (classManagementTableModel == null) return;
-        classManagementTableModel.setRowCount(0); 
+        List<Object[]> rows = new ArrayList<>();
         List<Student> classStudents = getStudentsForClass();
         for (Student s : classStudents) {
-            classManagementTableModel.addRow(new Object[]{s.getId(), s.getName(), s.getSubject()}); 
+            rows.add(new Object[]{s.getId(), s.getName(), s.getSubject()}); 
         }
+        classManagementTableModel.setRows(rows); // Diff-based: only changed rows repaint
     }
     
+    // UPDATED: Fetches only new/edited rows in the background, then repaints changed rows
     public void loadAttendancePercentageData() {
         if (attendanceTableModel == null) return;
-        attendanceTableModel.setRowCount(0); 
-        List<Student> classStudents = getStudentsForClass();
-        String subject = teacher.getSubject();
+        syncAgain = true;
+        if (!syncRunning.compareAndSet(false, true)) return; // The running sync will loop once more
+        
+        new Thread(() -> {
+            try {
+                boolean firstPass = true;
+                while (syncAgain) {
+                    syncAgain = false;
+                    boolean changed = !syncState.refresh().isEmpty();
+                    List<Student> classStudents = getStudentsForClass();
+                    if (changed || firstPass) saveSnapshot(classStudents);
+                    firstPass = false;
+                    // The range index only hears new marks; edits and deletes need a reload
+                    AttendanceRangeIndex index = rangeIndex;
+                    if (syncState.takeRowsRemoved() && index != null) {
+                        index.rebuild();
+                        SwingUtilities.invokeLater(this::updateRangeStatistics);
+                    }
+                    SwingUtilities.invokeLater(() -> showAttendancePercentages(classStudents));
+                }
+            } finally {
+                syncRunning.set(false);
+                // A request that came in after the loop's last check lost its CAS above; pick it up
+                if (syncAgain && !disposed) loadAttendancePercentageData();
+            }
+        }).start();
+    }
+    
+    // --- NEW: Local snapshot so the next login paints before the database answers ---
+    private void showSnapshot() {
+        DashboardSnapshot snapshot = DashboardSnapshot.load(teacher.getSubject());
+        if (snapshot == null) return;
+        List<Object[]> rows = new ArrayList<>();
+        for (DashboardSnapshot.Entry e : snapshot.getEntries()) {
+            rows.add(new Object[]{e.getStudentId(), e.getName(), df.format(e.getPercentage()) + "%"});
+        }
+        attendanceTableModel.setRows(rows);
+    }
+    
+    private void saveSnapshot(List<Student> classStudents) {
+        List<DashboardSnapshot.Entry> entries = new ArrayList<>();
+        for (Student s : classStudents) {
+            long[] counts = syncState.getCounts(s.getId());
+            entries.add(new DashboardSnapshot.Entry(s.getId(), s.getName(), counts[0], counts[1]));
+        }
+        DashboardSnapshot.save(teacher.getSubject(), entries);
+    }
+    
+    private void showAttendancePercentages(List<Student> classStudents) {
+        List<Object[]> rows = new ArrayList<>();
         for (Student s : classStudents) {
-            double percentage = attendanceRepo.getAttendancePercentage(s.getId(), subject);
-            attendanceTableModel.addRow(new Object[]{s.getId(), s.getName(), df.format(percentage) + "%"}); 
+            double percentage = syncState.getPercentage(s.getId());
+            rows.add(new Object[]{s.getId(), s.getName(), df.format(percentage) + "%"}); 
         }
+        attendanceTableModel.setRows(rows); // Diff-based: only changed rows repaint
+        updateRangeStatistics(); // New marks may fall inside the selected range
     }
 }
\ No newline at end of file